@@ -0,0 +1,243 @@
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Reads the "final_vid_angles" array of an angle file ({"final_vid_angles": [20.32, 20.64, 0, ...]}) straight into
+// a double[], without building a JSON tree or boxing the numbers.
+// The file is read through a FileChannel into a byte buffer that every thread keeps and reuses, and the numbers are
+// parsed from the bytes in place. Other keys in the object are skipped.
+public class AngleFileReader {
+  public static final String ANGLES_KEY = "final_vid_angles";
+  private static final int INITIAL_BUFFER_SIZE = 1 << 16;
+  // 10^0 ... 10^22 are exact doubles, which is what the fast path of parseNumber() needs.
+  private static final double[] POWERS_OF_TEN = new double[23];
+  private static final long MAX_EXACT_MANTISSA = 1L << 53;
+  static {
+    POWERS_OF_TEN[0] = 1.0;
+    for (int p = 1; p < POWERS_OF_TEN.length; p++) POWERS_OF_TEN[p] = POWERS_OF_TEN[p - 1] * 10.0;
+  }
+
+  // One file buffer and one frame buffer per thread, grown when a bigger file comes along.
+  private static final ThreadLocal<ByteBuffer> fileBuffers = ThreadLocal.withInitial(() -> ByteBuffer.allocate(INITIAL_BUFFER_SIZE));
+  private static final ThreadLocal<double[]> frameBuffers = ThreadLocal.withInitial(() -> new double[256]);
+
+  // The parse state of one file.
+  private final byte[] bytes;
+  private final int length;
+  private final String fileName;
+  private int position;
+
+  private AngleFileReader(byte[] bytes, int length, String fileName) {
+    this.bytes = bytes;
+    this.length = length;
+    this.fileName = fileName;
+    this.position = 0;
+  }
+
+  // Returns the angles of one file.
+  public static double[] read(String angleFileName) throws IOException {
+    ByteBuffer buffer = fileBuffers.get();
+    try (FileInputStream in = new FileInputStream(angleFileName); FileChannel channel = in.getChannel()) {
+      final long fileSize = channel.size();
+      if (fileSize > Integer.MAX_VALUE) throw new IOException("'" + angleFileName + "' is too big to be an angle file");
+      if (fileSize > buffer.capacity()) {
+        buffer = ByteBuffer.allocate(Math.max((int) fileSize, 2 * buffer.capacity()));
+        fileBuffers.set(buffer);
+      }
+      buffer.clear();
+      while (buffer.position() < fileSize && channel.read(buffer) >= 0) {}
+    }
+    return new AngleFileReader(buffer.array(), buffer.position(), angleFileName).parseAngles();
+  }
+
+  // Returns the angles of every file, in order. The files are read on up to numOfThreads threads at once.
+  public static double[][] readAll(List<String> angleFileNames, int numOfThreads) throws IOException {
+    final double[][] angles = new double[angleFileNames.size()][];
+    if (numOfThreads <= 1 || angleFileNames.size() <= 1) {
+      for (int f = 0; f < angles.length; f++) angles[f] = read(angleFileNames.get(f));
+      return angles;
+    }
+    final ExecutorService pool = Executors.newFixedThreadPool(Math.min(numOfThreads, angleFileNames.size()));
+    try {
+      ArrayList<Future<double[]>> files = new ArrayList<>();
+      for (String angleFileName:angleFileNames) files.add(pool.submit(() -> read(angleFileName)));
+      for (int f = 0; f < angles.length; f++) angles[f] = files.get(f).get();
+      return angles;
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+      throw new IOException(e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException(e);
+    } finally { pool.shutdownNow(); }
+  }
+
+  // Walks the top level object until it finds ANGLES_KEY and parses its array.
+  private double[] parseAngles() throws IOException {
+    expect('{');
+    if (peek() != '}') {
+      while (true) {
+        final boolean isAnglesKey = parseKey();
+        expect(':');
+        if (isAnglesKey) return parseNumberArray();
+        skipValue();
+        if (peek() == ',') position++;
+        else break;
+      }
+    }
+    throw error("has no \"" + ANGLES_KEY + "\" array");
+  }
+
+  private double[] parseNumberArray() throws IOException {
+    double[] frames = frameBuffers.get();
+    int numOfFrames = 0;
+    expect('[');
+    if (peek() == ']') {
+      position++;
+      return new double[0];
+    }
+    while (true) {
+      if (numOfFrames == frames.length) {
+        frames = Arrays.copyOf(frames, 2 * frames.length);
+        frameBuffers.set(frames);
+      }
+      skipWhitespace();
+      frames[numOfFrames++] = parseNumber();
+      final byte next = peek();
+      position++;
+      if (next == ']') break;
+      if (next != ',') throw error("has a '" + (char) next + "' where a ',' or ']' should be");
+    }
+    return Arrays.copyOf(frames, numOfFrames);
+  }
+
+  // Parses a JSON number. When the digits fit in 53 bits and the decimal exponent is small, the value is exact
+  // as one multiplication or division by an exact power of ten (Clinger's fast path), which gives the same double
+  // as Double.parseDouble(); anything else goes to Double.parseDouble().
+  private double parseNumber() throws IOException {
+    final int start = position;
+    boolean isNegative = false;
+    if (position < length && bytes[position] == '-') {
+      isNegative = true;
+      position++;
+    }
+    long mantissa = 0;
+    int numOfDigits = 0;
+    int exponent = 0;
+    boolean hasDigits = false;
+    while (position < length && isDigit(bytes[position])) {
+      if (numOfDigits < 19) mantissa = 10 * mantissa + (bytes[position] - '0');
+      else exponent++;
+      if (mantissa != 0) numOfDigits++;
+      hasDigits = true;
+      position++;
+    }
+    if (position < length && bytes[position] == '.') {
+      position++;
+      while (position < length && isDigit(bytes[position])) {
+        if (numOfDigits < 19) {
+          mantissa = 10 * mantissa + (bytes[position] - '0');
+          exponent--;
+          if (mantissa != 0) numOfDigits++;
+        }
+        hasDigits = true;
+        position++;
+      }
+    }
+    if (!hasDigits) throw error("has something that isn't a number where an angle should be");
+    if (position < length && (bytes[position] == 'e' || bytes[position] == 'E')) {
+      position++;
+      boolean isNegativeExponent = false;
+      if (position < length && (bytes[position] == '+' || bytes[position] == '-')) isNegativeExponent = bytes[position++] == '-';
+      int explicitExponent = 0;
+      boolean hasExponentDigits = false;
+      while (position < length && isDigit(bytes[position])) {
+        if (explicitExponent < 100000) explicitExponent = 10 * explicitExponent + (bytes[position] - '0');
+        hasExponentDigits = true;
+        position++;
+      }
+      if (!hasExponentDigits) throw error("has a number with an empty exponent");
+      exponent += isNegativeExponent ? -explicitExponent : explicitExponent;
+    }
+    if (numOfDigits < 19 && mantissa <= MAX_EXACT_MANTISSA && Math.abs(exponent) < POWERS_OF_TEN.length) {
+      final double value = (exponent >= 0) ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+      return isNegative ? -value : value;
+    }
+    return Double.parseDouble(new String(bytes, start, position - start, StandardCharsets.US_ASCII));
+  }
+
+  // Parses a string at the current position and returns true if it is ANGLES_KEY.
+  private boolean parseKey() throws IOException {
+    expect('"');
+    final int start = position;
+    skipStringRest();
+    final int keyLength = position - 1 - start;
+    if (keyLength != ANGLES_KEY.length()) return false;
+    for (int c = 0; c < keyLength; c++) {
+      if (bytes[start + c] != ANGLES_KEY.charAt(c)) return false;
+    }
+    return true;
+  }
+
+  // Skips the rest of a string whose opening quote was already read, including the closing quote.
+  private void skipStringRest() throws IOException {
+    while (position < length) {
+      final byte b = bytes[position++];
+      if (b == '\\') position++;
+      else if (b == '"') return;
+    }
+    throw error("ends in the middle of a string");
+  }
+
+  // Skips any JSON value (string, number, literal, array or object).
+  private void skipValue() throws IOException {
+    final byte first = peek();
+    if (first == '"') {
+      position++;
+      skipStringRest();
+    } else if (first == '[' || first == '{') {
+      int depth = 0;
+      while (position < length) {
+        final byte b = bytes[position++];
+        if (b == '"') skipStringRest();
+        else if (b == '[' || b == '{') depth++;
+        else if ((b == ']' || b == '}') && --depth == 0) return;
+      }
+      throw error("ends in the middle of an array or object");
+    } else {
+      while (position < length && bytes[position] != ',' && bytes[position] != '}' && bytes[position] != ']' && !isWhitespace(bytes[position])) position++;
+    }
+  }
+
+  private void expect(char c) throws IOException {
+    if (peek() != c) throw error("has no '" + c + "' where one should be");
+    position++;
+  }
+
+  // Returns the next byte that isn't whitespace without reading it.
+  private byte peek() throws IOException {
+    skipWhitespace();
+    if (position >= length) throw error("ends too early");
+    return bytes[position];
+  }
+
+  private void skipWhitespace() {
+    while (position < length && isWhitespace(bytes[position])) position++;
+  }
+
+  private static boolean isWhitespace(byte b) { return b == ' ' || b == '\n' || b == '\r' || b == '\t'; }
+  private static boolean isDigit(byte b) { return b >= '0' && b <= '9'; }
+
+  private IOException error(String problem) {
+    return new IOException("'" + fileName + "' is not an angle file: it " + problem + " (at byte " + position + ")");
+  }
+}
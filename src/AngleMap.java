@@ -1,122 +1,139 @@
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.io.IOException;
-import java.lang.Integer;
+import java.io.File;
 import java.io.FileInputStream;
-import java.io.ObjectInputStream;
 import java.io.FileOutputStream;
-import java.io.ObjectOutputStream;
-import java.util.TreeMap;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 
 public class AngleMap {
   // DATA
-  public ArrayList<Integer> tsIframes = new ArrayList<>();
-  public ArrayList<Integer> tsJframes = new ArrayList<>();
-  private static String fileName;
+  private static final int CHECKPOINT_MAGIC = 0x414D4150; // "AMAP"
+  private static final int CHECKPOINT_VERSION = 1;
+  private int[] tsIframes;
+  private int[] tsJframes;
+  private int size;
+  private double warpDistance = Double.NaN; // NaN until it is set (a checkpoint doesn't keep it)
 
   // CONSTRUCTOR
-  public AngleMap(HashMap<Integer, Integer> solutionMap, String fName) {
-    for (int i:solutionMap.keySet()) tsIframes.add(i);
-    for (int j:solutionMap.values()) tsIframes.add(j);
-    fileName = fName;
+  // @param : number of frame pairs the map is expected to hold (it grows if needed)
+  public AngleMap(int capacity) {
+    tsIframes = new int[Math.max(capacity, 1)];
+    tsJframes = new int[Math.max(capacity, 1)];
+    size = 0;
   }
 
   public void put(int tsIframe, int tsJframe) {
-    tsIframes.add(tsIframe);
-    tsJframes.add(tsJframe);
+    if (size == tsIframes.length) {
+      tsIframes = Arrays.copyOf(tsIframes, size * 2);
+      tsJframes = Arrays.copyOf(tsJframes, size * 2);
+    }
+    tsIframes[size] = tsIframe;
+    tsJframes[size] = tsJframe;
+    size++;
+  }
+
+  public int getTSIframe(int index) { return tsIframes[index]; }
+  public int getTSJframe(int index) { return tsJframes[index]; }
+  // The warp distance of the alignment the map was made from.
+  public double getWarpDistance() { return warpDistance; }
+  public void setWarpDistance(double warpDistance) { this.warpDistance = warpDistance; }
+
+  // This method writes the 1 frame - 1 frame angle map to a checkpoint file.
+  // Format: magic, version, number of pairs, then every (tsI frame, tsJ frame) pair, all as 4 byte ints.
+  public void save(File checkpointFile) throws IOException {
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(checkpointFile)))) {
+      out.writeInt(CHECKPOINT_MAGIC);
+      out.writeInt(CHECKPOINT_VERSION);
+      out.writeInt(size);
+      for (int i = 0; i < size; i++) {
+        out.writeInt(tsIframes[i]);
+        out.writeInt(tsJframes[i]);
+      }
+    }
   }
 
-  // This method serializes the 1 frame - 1 frame angle map
-  public void serialize() {
-    HashMap<Integer, Integer> serializableSolution = new HashMap<>();
-    for (int i = 0; i < tsIframes.size(); i++) 
-      serializableSolution.put((int) tsIframes.get(i),(int) tsJframes.get(i));
-    try {
-      FileOutputStream fos = new FileOutputStream(fileName);
-      ObjectOutputStream oos = new ObjectOutputStream(fos);
-      oos.writeObject(serializableSolution);
-      oos.close();
-      fos.close();
-    } catch (IOException ioe) { ioe.printStackTrace(); }
+  // This method reads an angle map written by save()
+  public static AngleMap load(File checkpointFile) throws IOException {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(checkpointFile)))) {
+      if (in.readInt() != CHECKPOINT_MAGIC) throw new IOException("'" + checkpointFile + "' is not an angle map checkpoint");
+      if (in.readInt() != CHECKPOINT_VERSION) throw new IOException("'" + checkpointFile + "' has an unsupported checkpoint version");
+      final int numOfPairs = in.readInt();
+      AngleMap aMap = new AngleMap(numOfPairs);
+      for (int i = 0; i < numOfPairs; i++) aMap.put(in.readInt(), in.readInt());
+      return aMap;
+    }
   }
 
-  // This method deserializes the 1 frame - 1 frame angle map to a hashmap
-  @SuppressWarnings("unchecked")
-  public static HashMap<Integer, Integer> deserializeToHashMap() {
-    HashMap<Integer, Integer> angleHashMap = new HashMap<>();
-    try {
-      FileInputStream fis = new FileInputStream(fileName);
-      ObjectInputStream ois = new ObjectInputStream(fis);
-      angleHashMap = (HashMap<Integer, Integer>) ois.readObject();
-      ois.close();
-      fis.close();
-    } catch (IOException ioe) {
-        ioe.printStackTrace();
-        System.out.println("Incomplete angle map: IOEexception");
-    } catch (ClassNotFoundException c) {
-        System.out.println("Class not found");
-        System.out.println("Incomplete angle map: ClassNotFoundException");
-        c.printStackTrace();
+  // This method maps the frame indexes of the series the zeroes were removed from back to the original frame
+  // numbers, so the indexes don't get messed up for the client. It is one pass over the map.
+  // @param : original frame number of every tsI frame that was kept (see Main.buildZeroHashMap())
+  // @param : original frame number of every tsJ frame that was kept
+  public void addZeroes(int[] tsIoriginalFrames, int[] tsJoriginalFrames) {
+    for (int i = 0; i < size; i++) {
+      tsIframes[i] = tsIoriginalFrames[tsIframes[i]];
+      tsJframes[i] = tsJoriginalFrames[tsJframes[i]];
     }
-    return angleHashMap;
   }
 
-  // This method deserializes the 1-1 angle map to an AngleMap
-  public static AngleMap deserializeToAngleMap(String fileName) {
-    HashMap<Integer, Integer> h = deserializeToHashMap();
-    return new AngleMap(h, fileName);
+  // Same, for when only the removed zero indexes are known: the original frame numbers are worked out from them.
+  // @param : the zero indexes of every segment (see Main.buildZeroHashMap())
+  // @param : the segment of this map
+  public void addZeroes(Map<Integer, ArrayList<Integer>> tsIZeroHashMap, Map<Integer, ArrayList<Integer>> tsJZeroHashMap, int a) {
+    int maxTSIframe = -1;
+    int maxTSJframe = -1;
+    for (int i = 0; i < size; i++) {
+      maxTSIframe = Math.max(maxTSIframe, tsIframes[i]);
+      maxTSJframe = Math.max(maxTSJframe, tsJframes[i]);
+    }
+    addZeroes(createOriginalFrameIndexes(tsIZeroHashMap.get(a), maxTSIframe + 1), createOriginalFrameIndexes(tsJZeroHashMap.get(a), maxTSJframe + 1));
   }
 
-    // This method shifts the indexes for the zeroes that were removed earlier to not mess up the indexes for the client.
-    public void addZeroes(HashMap<Integer, ArrayList<Integer>> tsIZeroHashMap, HashMap<Integer, ArrayList<Integer>> tsJZeroHashMap, int a) {
-        ArrayList<Integer> tsIZeroIndexes = tsIZeroHashMap.get(a);
-        ArrayList<Integer> tsJZeroIndexes = tsJZeroHashMap.get(a);
-        if (!tsIZeroIndexes.isEmpty()) {
-            for (int i = 0; i < tsIframes.size(); i++) {
-                if (tsIZeroIndexes.contains(i)) {
-                    for (int j = i; j < tsIframes.size(); j++) {
-                        int k = tsIframes.get(j);
-                        tsIframes.remove(j);
-                        tsIframes.add(j, k++);
-                    }
-                }
-            }
-        }
-        if (!tsJZeroIndexes.isEmpty()) {
-            for (int i = 0; i < tsJframes.size(); i++) {
-                if (tsJZeroIndexes.contains(i)) {
-                    for (int j = i; j < tsJframes.size(); j++) {
-                        int k = tsJframes.get(j);
-                        tsJframes.remove(j);
-                        tsJframes.add(j, k++);
-                    }
-                }
-            }
-        }
+  // This method returns the original frame number of each of the first numOfFrames frames that are left after
+  // the (ascending) zero indexes were removed.
+  // @param : indexes of the removed frames, may be null if none were removed
+  // @param : number of frames that were kept
+  public static int[] createOriginalFrameIndexes(List<Integer> zeroIndexes, int numOfFrames) {
+    int[] originalFrames = new int[numOfFrames];
+    int z = 0;
+    int frame = 0;
+    for (int i = 0; i < numOfFrames; i++, frame++) {
+      while (zeroIndexes != null && z < zeroIndexes.size() && zeroIndexes.get(z) == frame) {
+        z++;
+        frame++;
+      }
+      originalFrames[i] = frame;
+    }
+    return originalFrames;
   }
   
   // This method turns the AngleMap into a printable String
   public String toString() {
     StringBuffer outStr = new StringBuffer("[");
-    for (int i = 0; i < tsIframes.size(); i++) {
-         outStr.append("(" + tsIframes.get(i) + "," + tsJframes.get(i) + ")");
-         if (i < tsIframes.size()-1) outStr.append(",");
+    for (int i = 0; i < size; i++) {
+         outStr.append("(" + tsIframes[i] + "," + tsJframes[i] + ")");
+         if (i < size-1) outStr.append(",");
       }
       return new String(outStr.append("]"));
    }
   
   // This method sorts the angle map according to tsIframe
+  // Each pair is packed into one long (tsI frame in the high half), so sorting the longs sorts by tsI frame.
   public void sort() {
-    TreeMap<Integer, Integer> sorter = new TreeMap<>();
-    for (int i = 0; i < tsIframes.size(); i++) sorter.put(tsIframes.get(i), tsJframes.get(i));
-    tsIframes.clear();
-    tsJframes.clear();
-    for (int i:sorter.keySet()) {
-      tsIframes.add(i);
-      tsJframes.add(sorter.get(i));
+    long[] sorter = new long[size];
+    for (int i = 0; i < size; i++) sorter[i] = ((long) tsIframes[i] << 32) | (tsJframes[i] & 0xFFFFFFFFL);
+    Arrays.sort(sorter);
+    for (int i = 0; i < size; i++) {
+      tsIframes[i] = (int) (sorter[i] >>> 32);
+      tsJframes[i] = (int) sorter[i];
     }
   }
 
   // This method gives the size of the angle map
-  public int size() { return tsIframes.size(); }
+  public int size() { return size; }
 }
\ No newline at end of file
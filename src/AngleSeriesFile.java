@@ -0,0 +1,189 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+// All the angle files of one video in one binary file (.angles), so a video is mapped into memory once instead of
+// having its 28 JSON files parsed again for every comparison.
+// Format (big-endian):
+//   int magic ("ANGS"), int version, int number of segments
+//   per segment: int name length, name (UTF-8), int number of frames, long offset of its angles
+//   per segment, at its offset (a multiple of 8): its angles as doubles
+// A segment is named after the angle file it was converted from, and is referred to from the outside as
+// "<container>#<segment name>" (see createSegmentNames()), which Main uses in place of an angle file name.
+public class AngleSeriesFile {
+  public static final String EXTENSION = ".angles";
+  public static final String SEGMENT_SEPARATOR = "#";
+  private static final int MAGIC = 0x414E4753; // "ANGS"
+  private static final int VERSION = 1;
+  // Every container that was opened, so each one is only mapped and indexed once (per version of the file).
+  private static final ConcurrentHashMap<String, AngleSeriesFile> openFiles = new ConcurrentHashMap<>();
+
+  private final String fileName;
+  private final long lastModified;
+  private final long fileLength;
+  private final Object fileKey;  // the inode where there is one, so a file renamed over this one is told apart
+  private final MappedByteBuffer buffer;
+  private final String[] segmentNames;
+  private final int[] numOfFrames;
+  private final long[] offsets;
+  private final HashMap<String, Integer> segmentIndexes;
+
+  private AngleSeriesFile(File file) throws IOException {
+    fileName = file.getPath();
+    final BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+    lastModified = attributes.lastModifiedTime().toMillis();
+    fileLength = attributes.size();
+    fileKey = attributes.fileKey();
+    try (RandomAccessFile in = new RandomAccessFile(file, "r"); FileChannel channel = in.getChannel()) {
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    try {
+      if (buffer.getInt() != MAGIC) throw new IOException("'" + fileName + "' is not an angle series file");
+      if (buffer.getInt() != VERSION) throw new IOException("'" + fileName + "' has an unsupported version");
+      final int numOfSegments = buffer.getInt();
+      segmentNames = new String[numOfSegments];
+      numOfFrames = new int[numOfSegments];
+      offsets = new long[numOfSegments];
+      segmentIndexes = new HashMap<>();
+      for (int k = 0; k < numOfSegments; k++) {
+        byte[] name = new byte[buffer.getInt()];
+        buffer.get(name);
+        segmentNames[k] = new String(name, StandardCharsets.UTF_8);
+        numOfFrames[k] = buffer.getInt();
+        offsets[k] = buffer.getLong();
+        if (offsets[k] + 8L * numOfFrames[k] > buffer.capacity()) throw new IOException("'" + fileName + "' is cut off");
+        segmentIndexes.put(segmentNames[k], k);
+      }
+    } catch (RuntimeException e) { throw new IOException("'" + fileName + "' has a broken header", e); }
+  }
+
+  // Returns the container, mapping it the first time it is asked for and again whenever the file has changed since
+  // (so a reader never gets the angles of an older version, see SegmentSeries.isCurrent()).
+  public static AngleSeriesFile open(String fileName) throws IOException {
+    final File file = new File(fileName);
+    try {
+      return openFiles.compute(file.getCanonicalPath(), (path, container) -> {
+        try { return (container != null && container.isCurrent(file)) ? container : new AngleSeriesFile(file); }
+        catch (IOException e) { throw new UncheckedIOException(e); }
+      });
+    } catch (UncheckedIOException e) { throw e.getCause(); }
+  }
+
+  // Returns true if the file is still the one that was mapped.
+  private boolean isCurrent(File file) throws IOException {
+    final BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+    return attributes.lastModifiedTime().toMillis() == lastModified && attributes.size() == fileLength
+        && (fileKey == null || fileKey.equals(attributes.fileKey()));
+  }
+
+  public static boolean isContainer(String fileName) { return fileName.endsWith(EXTENSION) && new File(fileName).isFile(); }
+
+  // Returns true if angleFileName is a "<container>#<segment name>" reference.
+  public static boolean isSegmentReference(String angleFileName) { return angleFileName.contains(EXTENSION + SEGMENT_SEPARATOR); }
+
+  // Returns the angles of a "<container>#<segment name>" reference.
+  public static double[] readSegment(String segmentReference) throws IOException {
+    final int separator = segmentReference.indexOf(EXTENSION + SEGMENT_SEPARATOR) + EXTENSION.length();
+    final AngleSeriesFile container = open(segmentReference.substring(0, separator));
+    final String segmentName = segmentReference.substring(separator + SEGMENT_SEPARATOR.length());
+    final Integer k = container.segmentIndexes.get(segmentName);
+    if (k == null) throw new IOException("'" + container.fileName + "' has no segment '" + segmentName + "'");
+    return container.readSegment(k);
+  }
+
+  // Returns a reference to every segment of the container, in the order they were converted in, like
+  // Main.createVidNamesArrayList() does for the files of a folder.
+  public ArrayList<String> createSegmentNames() {
+    ArrayList<String> names = new ArrayList<>();
+    for (String segmentName:segmentNames) names.add(fileName + SEGMENT_SEPARATOR + segmentName);
+    return names;
+  }
+
+  public int numOfSegments() { return segmentNames.length; }
+  public String getSegmentName(int k) { return segmentNames[k]; }
+  public int getNumOfFrames(int k) { return numOfFrames[k]; }
+
+  // Copies the angles of segment k out of the mapped file in one bulk get. Safe to call from several threads.
+  public double[] readSegment(int k) {
+    final double[] frames = new double[numOfFrames[k]];
+    final ByteBuffer segment = buffer.duplicate();
+    segment.position((int) offsets[k]);
+    segment.asDoubleBuffer().get(frames);
+    return frames;
+  }
+
+  // Segment k as a 1-dimensional time series.
+  public TimeSeries getTimeSeries(int k) { return TimeSeries.wrap(readSegment(k)); }
+
+  // Writes the angles of every angle file into one container, in the given order. Each segment is named after
+  // its file (without the folder).
+  // The container is written to a temporary file next to outFile and then renamed over it, so an older version
+  // that is still mapped (by open()) is never changed under its readers.
+  public static void convert(List<String> angleFileNames, File outFile) throws IOException {
+    final int numOfSegments = angleFileNames.size();
+    final byte[][] names = new byte[numOfSegments][];
+    final double[][] segments = AngleFileReader.readAll(angleFileNames, Runtime.getRuntime().availableProcessors());
+    long offset = 12;
+    for (int k = 0; k < numOfSegments; k++) {
+      final String angleFileName = angleFileNames.get(k);
+      names[k] = angleFileName.substring(Math.max(angleFileName.lastIndexOf('\\'), angleFileName.lastIndexOf('/')) + 1).getBytes(StandardCharsets.UTF_8);
+      offset += 4 + names[k].length + 4 + 8;
+    }
+    // the angles start at the next multiple of 8
+    final int padding = (int) ((8 - offset % 8) % 8);
+    offset += padding;
+    final File parent = outFile.getAbsoluteFile().getParentFile();
+    final File tempFile = File.createTempFile(outFile.getName(), ".tmp", parent);
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(numOfSegments);
+      for (int k = 0; k < numOfSegments; k++) {
+        out.writeInt(names[k].length);
+        out.write(names[k]);
+        out.writeInt(segments[k].length);
+        out.writeLong(offset);
+        offset += 8L * segments[k].length;
+      }
+      for (int p = 0; p < padding; p++) out.writeByte(0);
+      for (double[] segment:segments) {
+        for (double angle:segment) out.writeDouble(angle);
+      }
+    } catch (IOException e) {
+      tempFile.delete();
+      throw e;
+    }
+    try {
+      try { Files.move(tempFile.toPath(), outFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING); }
+      catch (AtomicMoveNotSupportedException e) { Files.move(tempFile.toPath(), outFile.toPath(), StandardCopyOption.REPLACE_EXISTING); }
+    } catch (IOException e) {
+      tempFile.delete();
+      throw e;
+    }
+    openFiles.remove(outFile.getCanonicalPath());
+  }
+
+  // Converts the angle files of a video folder (in Main.createVidNamesArrayList() order) into folderName.angles
+  // and returns that file.
+  public static File convert(String folderName) throws IOException {
+    final File outFile = new File(folderName + EXTENSION);
+    convert(Main.createVidNamesArrayList(folderName), outFile);
+    return outFile;
+  }
+}
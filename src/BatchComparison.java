@@ -0,0 +1,170 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Aligns every student video of a manifest with every teacher video of it in one run, e.g. to rank a student
+// against a library of reference performances without starting a JVM per pair.
+// The manifest is a text file with one video folder (or .angles container) per line:
+//   # comment
+//   student .\\free throw\\video2
+//   teacher .\\free throw\\video4
+//   teacher .\\free throw\\video6.angles
+// Every pair is aligned like Main.bodyDTW() would, and written to outputDir as <student>_<teacher>.json. The pairs
+// are spread over the threads (each pair aligns its segments one after another), and every video is read only
+// once: the teachers through ReferenceCache.shared() and the students through a cache of their own.
+// outputDir also gets summary.csv, with the warp distance of every pair and each student's teachers ranked from
+// closest to furthest.
+public class BatchComparison {
+  public static final String SUMMARY_FILE_NAME = "summary.csv";
+
+  private final ArrayList<String> studentFolders = new ArrayList<>();
+  private final ArrayList<String> teacherFolders = new ArrayList<>();
+
+  public BatchComparison() {}
+
+  public BatchComparison(List<String> studentFolders, List<String> teacherFolders) {
+    for (String folderName:studentFolders) addStudent(folderName);
+    for (String folderName:teacherFolders) addTeacher(folderName);
+  }
+
+  // Reads a manifest (see above). Blank lines and lines starting with # are skipped.
+  public static BatchComparison readManifest(String manifestFileName) throws IOException {
+    BatchComparison batch = new BatchComparison();
+    try (BufferedReader in = new BufferedReader(new FileReader(manifestFileName))) {
+      String line;
+      int lineNumber = 0;
+      while ((line = in.readLine()) != null) {
+        lineNumber++;
+        line = line.trim();
+        if (line.isEmpty() || line.startsWith("#")) continue;
+        final String[] entry = line.split("\\s+", 2);
+        if (entry.length < 2) throw new IOException("'" + manifestFileName + "' line " + lineNumber + " has no folder");
+        if (entry[0].equalsIgnoreCase("student")) batch.addStudent(entry[1]);
+        else if (entry[0].equalsIgnoreCase("teacher")) batch.addTeacher(entry[1]);
+        else throw new IOException("'" + manifestFileName + "' line " + lineNumber + " should start with student or teacher, not '" + entry[0] + "'");
+      }
+    }
+    return batch;
+  }
+
+  // A video that is already in the list isn't added again.
+  public void addStudent(String folderName) { if (!studentFolders.contains(folderName)) studentFolders.add(folderName); }
+  public void addTeacher(String folderName) { if (!teacherFolders.contains(folderName)) teacherFolders.add(folderName); }
+  public List<String> getStudentFolders() { return Collections.unmodifiableList(studentFolders); }
+  public List<String> getTeacherFolders() { return Collections.unmodifiableList(teacherFolders); }
+
+  // Aligns every student with every teacher and returns the results, student by student in manifest order and
+  // each student's teachers from closest to furthest. A pair that fails (a folder that is missing or empty, a
+  // student with more segments than the teacher, an alignment that throws) is reported in the summary and left out
+  // of the ranking (it is put last) instead of stopping the batch.
+  // The pairs are spread over the options' threads.
+  public ArrayList<ComparisonResult> run(File outputDir, DTWOptions options) throws Exception {
+    if (studentFolders.isEmpty() || teacherFolders.isEmpty()) throw new InternalError("ERROR:  A batch needs at least one student and one teacher");
+    outputDir.mkdirs();
+    // the segment names of every video are listed by the first pair that needs them
+    final ConcurrentHashMap<String, ArrayList<String>> vidNames = new ConcurrentHashMap<>();
+    final Map<String, String> studentNames = createOutputNames(studentFolders);
+    final Map<String, String> teacherNames = createOutputNames(teacherFolders);
+    // every pair aligns its segments one after another, with the students read through a cache of their own
+    final DTWOptions pairOptions = new DTWOptions(options);
+    pairOptions.setNumOfThreads(1);
+    pairOptions.setCheckpointDir(null);
+    pairOptions.setStudentCache(new ReferenceCache(ReferenceCache.shared().getMemoryBudget()));
+
+    final ArrayList<ComparisonResult> results = new ArrayList<>();
+    final ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(options.getNumOfThreads(), studentFolders.size() * teacherFolders.size())));
+    try {
+      ArrayList<Future<ComparisonResult>> pairs = new ArrayList<>();
+      for (String student:studentFolders) {
+        for (String teacher:teacherFolders) {
+          final String outputFileName = new File(outputDir, studentNames.get(student) + "_" + teacherNames.get(teacher) + ".json").getPath();
+          pairs.add(pool.submit(() -> {
+            try {
+              final ArrayList<String> studentVidNames = listVidNames(vidNames, student);
+              final ArrayList<String> teacherVidNames = listVidNames(vidNames, teacher);
+              if (studentVidNames.size() > teacherVidNames.size())
+                return new ComparisonResult(student, teacher, outputFileName, null, "the student has " + studentVidNames.size() + " segments but the teacher only " + teacherVidNames.size());
+              BodyAlignment alignment = Main.bodyDTW(studentVidNames, teacherVidNames, outputFileName, pairOptions);
+              return new ComparisonResult(student, teacher, outputFileName, alignment, null);
+            } catch (Exception | InternalError e) { return new ComparisonResult(student, teacher, outputFileName, null, e.toString()); }
+          }));
+        }
+      }
+      for (Future<ComparisonResult> pair:pairs) results.add(pair.get());
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof Exception) throw (Exception) e.getCause();
+      throw e;
+    } finally { pool.shutdownNow(); }
+
+    // rank each student's teachers; the sort is stable, so ties keep manifest order
+    final int numOfTeachers = teacherFolders.size();
+    for (int s = 0; s < studentFolders.size(); s++)
+      results.subList(s * numOfTeachers, (s + 1) * numOfTeachers).sort(Comparator.comparingDouble(ComparisonResult::getWarpDistance));
+    writeSummary(results, new File(outputDir, SUMMARY_FILE_NAME));
+    return results;
+  }
+
+  // The segments of a video, listed once per run (two pairs that ask at the same time may both list them).
+  private static ArrayList<String> listVidNames(ConcurrentHashMap<String, ArrayList<String>> vidNames, String folderName) throws IOException {
+    ArrayList<String> names = vidNames.get(folderName);
+    if (names == null) {
+      names = Main.listVidNames(folderName);
+      vidNames.put(folderName, names);
+    }
+    return names;
+  }
+
+  // One line per pair: student, teacher, rank of the teacher for that student (1 is the closest), warp distance,
+  // aligned student and teacher frames, and the output file (or the error).
+  public static void writeSummary(List<ComparisonResult> results, File summaryFile) throws IOException {
+    try (PrintWriter out = new PrintWriter(summaryFile, "UTF-8")) {
+      out.println("student,teacher,rank,warp distance,student frames,teacher frames,output file");
+      String lastStudent = null;
+      int rank = 0;
+      for (ComparisonResult result:results) {
+        rank = result.getStudentFolder().equals(lastStudent) ? rank + 1 : 1;
+        lastStudent = result.getStudentFolder();
+        out.print(csv(result.getStudentFolder()) + "," + csv(result.getTeacherFolder()) + ",");
+        if (result.isAligned()) {
+          final BodyAlignment alignment = result.getAlignment();
+          out.println(rank + "," + alignment.getWarpDistance() + "," + alignment.getNumOfStudentFrames() + "," + alignment.getNumOfTeacherFrames() + "," + csv(result.getOutputFileName()));
+        } else out.println(",,,," + csv("ERROR: " + result.getError()));
+      }
+    }
+  }
+
+  // The name a video's output files get: the last part of its folder (without .angles), with -2, -3, ... added
+  // when two videos of the list would get the same name.
+  private static Map<String, String> createOutputNames(List<String> folderNames) {
+    LinkedHashMap<String, String> outputNames = new LinkedHashMap<>();
+    HashMap<String, Integer> numOfUses = new HashMap<>();
+    for (String folderName:folderNames) {
+      if (outputNames.containsKey(folderName)) continue;
+      String name = folderName.replaceAll("[\\\\/]+$", "");
+      name = name.substring(Math.max(name.lastIndexOf('\\'), name.lastIndexOf('/')) + 1);
+      if (name.endsWith(AngleSeriesFile.EXTENSION)) name = name.substring(0, name.length() - AngleSeriesFile.EXTENSION.length());
+      final int uses = numOfUses.merge(name, 1, Integer::sum);
+      outputNames.put(folderName, (uses == 1) ? name : name + "-" + uses);
+    }
+    return outputNames;
+  }
+
+  private static String csv(String value) {
+    if (value.indexOf(',') < 0 && value.indexOf('"') < 0) return value;
+    return "\"" + value.replace("\"", "\"\"") + "\"";
+  }
+}
@@ -8,21 +8,31 @@ import java.lang.Math;
 public class Body {
 
   // DATA
-  public static int[] simplifiedFrameArray;
-  public static int[] finalFrameArray;
-  public static int numOfStudentFrames;
-  public static int numOfTeacherFrames;
-  private static int modeThreshold; // arbitrary
+  private final int numOfStudentFrames;
+  private final int numOfTeacherFrames;
+  private final BodyAlignment alignment;
+  private int modeThreshold; // arbitrary
   private static final int arbitraryRejectNum = Integer.MIN_VALUE; // arbitrary
-  private static int quadrantSize;
+  private int quadrantSize;
   private static final int rangeDifferenceLimit = 3; // arbitrary
 
   // CONSTRUCTOR
-  public Body(ArrayList<AngleMap> bodyList, ArrayList<String> fileNameList) {
+  // Everything Body works with lives in the instance, so separate Bodies can be built on separate threads.
+  // @param : the AngleMaps of every segment
+  // @param : number of student frames (before the zeroes were removed) the frame map is built for
+  // @param : number of teacher frames (before the zeroes were removed)
+  public Body(ArrayList<AngleMap> bodyList, int numOfStudentFrames, int numOfTeacherFrames) {
+    this.numOfStudentFrames = numOfStudentFrames;
+    this.numOfTeacherFrames = numOfTeacherFrames;
     HashMap<Integer, ArrayList<Integer>> frameMap = createFrameMap(bodyList);
-    finalFrameArray = simplifyFrameMap(frameMap);
+    double warpDistance = 0.0;
+    for (AngleMap a:bodyList) warpDistance += a.getWarpDistance();
+    alignment = new BodyAlignment(simplifyFrameMap(frameMap), numOfStudentFrames, numOfTeacherFrames, warpDistance);
   }
 
+  // This method returns the final 1 student frame - 1 teacher frame alignment.
+  public BodyAlignment getAlignment() { return alignment; }
+
   
   // This method is only for testing. When there is only one angle map to evaluate, this bypasses
   // the simplification phase because it is already matching one frame to one frame.
@@ -34,17 +44,19 @@ public class Body {
 
   // This method creates a HashMap where the key is the frame # (and tsI frame) and the value is an
   // ArrayList of the teacher frames for that frame #.
+  // Both are original frame numbers (the AngleMaps have them, see AngleMap.addZeroes()), so a frame that is a
+  // dropout in one segment still gets the teacher frames of the other segments.
   // Theoretically, there should be 28 values in the arrayList.
   // There should be a key for every frame (30 - 35 probably)
   // @param : a Map containing all of the AngleMaps 
-  private static HashMap<Integer, ArrayList<Integer>> createFrameMap(ArrayList<AngleMap> bodyList) {
+  private HashMap<Integer, ArrayList<Integer>> createFrameMap(ArrayList<AngleMap> bodyList) {
     HashMap<Integer, ArrayList<Integer>> frameMap = new HashMap<>();
-    for (int i = 0; i < numOfStudentFrames; i++) {
-      ArrayList<Integer> associatedFrames = new ArrayList<>();
-      for (AngleMap a:bodyList) {
-          if (i < a.tsJframes.size()) associatedFrames.add(a.tsJframes.get(i));
+    for (int i = 0; i < numOfStudentFrames; i++) frameMap.put(i, new ArrayList<>());
+    for (AngleMap a:bodyList) {
+      for (int k = 0; k < a.size(); k++) {
+          ArrayList<Integer> associatedFrames = frameMap.get(a.getTSIframe(k));
+          if (associatedFrames != null) associatedFrames.add(a.getTSJframe(k));
       }
-      frameMap.put(i, associatedFrames);
     }
     return frameMap;
   }
@@ -57,7 +69,7 @@ public class Body {
   // that frame is returned.
   // Otherwise, an arbitrary reject number is returned.
   // @param: list of teacher frames
-  private static int simplifyByMode(ArrayList<Integer> teacherFrames) {
+  private int simplifyByMode(ArrayList<Integer> teacherFrames) {
     int max = 0;
     for (int f:teacherFrames) {
         if (max < f) max = f;
@@ -81,7 +93,7 @@ public class Body {
   // if it is odd, then it ignores the last number, which isn't great
   // but that's just how life is sometimes
   // @param: list of teacherFrames
-  private static int getQuadrantSize(ArrayList<Integer> teacherFrames) {
+  private int getQuadrantSize(ArrayList<Integer> teacherFrames) {
     int quadrantSize = 0;
     if (teacherFrames.size() % 2 == 0) quadrantSize = teacherFrames.size() / 4;
     else quadrantSize = (teacherFrames.size() - 1) / 4;
@@ -95,7 +107,7 @@ public class Body {
   // and the the quadrant size.
   // @param: List of teacher frames
   // @param: The quadrant we are building
-  private static ArrayList<Integer> buildQuadrantOfTeacherFrames(ArrayList<Integer> teacherFrames, int quadrantNum) {
+  private ArrayList<Integer> buildQuadrantOfTeacherFrames(ArrayList<Integer> teacherFrames, int quadrantNum) {
     ArrayList<Integer> quadrant = new ArrayList<>();
     int lowerBound = quadrantSize * (quadrantNum - 1);
     int upperBound = quadrantSize * quadrantNum;
@@ -112,7 +124,7 @@ public class Body {
   // DATA), it returns true.
   // @param: the first quadrant arraylist
   // @param: the second quadrant arraylist
-  private static boolean rangeOfQuadrants(ArrayList<Integer> q1, ArrayList<Integer> q2) {
+  private boolean rangeOfQuadrants(ArrayList<Integer> q1, ArrayList<Integer> q2) {
     int lowerBoundQ1 = q1.get(0);
     int upperBoundQ1 = q1.get(q1.size() - 1);
     int q1Range = upperBoundQ1 - lowerBoundQ1;
@@ -130,7 +142,7 @@ public class Body {
   // good enough to qualify using median on the teacherFrames arraylist.
   // If it is, it returns true.
   // @param: list of teacher frames
-  private static boolean areQuadrantsOfTeacherFramesEvenlySplit(ArrayList<Integer> teacherFrames) {
+  private boolean areQuadrantsOfTeacherFramesEvenlySplit(ArrayList<Integer> teacherFrames) {
     // split into quadrants
     quadrantSize = getQuadrantSize(teacherFrames);
     if (quadrantSize > 1) {
@@ -151,7 +163,7 @@ public class Body {
   // This method is a util method for simplifyByMedian().
   // It returns the median for the list of teacher frames.
   // @param: list of teacher frames
-  private static int getMedian(ArrayList<Integer> teacherFrames) {
+  private int getMedian(ArrayList<Integer> teacherFrames) {
     Collections.sort(teacherFrames);
     int median = 0;
     if (teacherFrames.size() == 1) median = teacherFrames.get(0);
@@ -171,7 +183,7 @@ public class Body {
   // if the values are not evenly split, it returns an
   // arbitrary reject number
   // @param: list of teacher frames
-  private static int simplifyByMedian(ArrayList<Integer> teacherFrames) {
+  private int simplifyByMedian(ArrayList<Integer> teacherFrames) {
     int returnValue;
     if (areQuadrantsOfTeacherFramesEvenlySplit(teacherFrames)) returnValue = getMedian(teacherFrames);
     else returnValue = arbitraryRejectNum;
@@ -183,7 +195,7 @@ public class Body {
   // This method finds the mean in the list of teacher frames for one
   // index and returns it.
   // @param: list of teacher frames
-  private static int simplifyByMean(ArrayList<Integer> teacherFrames) {
+  private int simplifyByMean(ArrayList<Integer> teacherFrames) {
     int sum = 0;
     if (teacherFrames.size() == 0) System.out.println("teacherFrames is empty.");
     for (Integer frame:teacherFrames)
@@ -193,12 +205,14 @@ public class Body {
   }
 
 
+  // A frame that is a dropout in every segment has no teacher frames and keeps the arbitrary reject number.
   // @param: HashMap where the key = frame # and value = tsJ frames
-  private static int[] simplifyFrameMap(HashMap<Integer, ArrayList<Integer>> frameMap) {
-    simplifiedFrameArray = new int[frameMap.size()];
+  private int[] simplifyFrameMap(HashMap<Integer, ArrayList<Integer>> frameMap) {
+    int[] simplifiedFrameArray = new int[frameMap.size()];
     Arrays.fill(simplifiedFrameArray, arbitraryRejectNum);
     for (int i = 0; i < frameMap.size(); i++) {
       ArrayList<Integer> teacherFrames = frameMap.get(i);
+      if (teacherFrames.isEmpty()) continue;
       int modeNum = simplifyByMode(teacherFrames);
       if (simplifiedFrameArray[i] == arbitraryRejectNum) simplifiedFrameArray[i] = modeNum;
       int medianNum = simplifyByMedian(teacherFrames);
@@ -0,0 +1,41 @@
+public class BodyAlignment {
+  // DATA
+  private final int[] frameArray;
+  private final int numOfStudentFrames;
+  private final int numOfTeacherFrames;
+  private final double warpDistance;
+
+  // CONSTRUCTOR
+  // @param : teacher frame for every student frame, indexed by student frame
+  // @param : number of student frames that were aligned
+  // @param : number of teacher frames that were aligned
+  public BodyAlignment(int[] frameArray, int numOfStudentFrames, int numOfTeacherFrames) {
+    this(frameArray, numOfStudentFrames, numOfTeacherFrames, Double.NaN);
+  }
+
+  // @param : the warp distances of every segment added up (NaN if they aren't known)
+  public BodyAlignment(int[] frameArray, int numOfStudentFrames, int numOfTeacherFrames, double warpDistance) {
+    this.frameArray = frameArray;
+    this.numOfStudentFrames = numOfStudentFrames;
+    this.numOfTeacherFrames = numOfTeacherFrames;
+    this.warpDistance = warpDistance;
+  }
+
+  public int getTeacherFrame(int studentFrame) { return frameArray[studentFrame]; }
+  public int[] getFrameArray() { return frameArray.clone(); }
+  public int getNumOfStudentFrames() { return numOfStudentFrames; }
+  public int getNumOfTeacherFrames() { return numOfTeacherFrames; }
+  // How far apart the two videos are: the lower, the closer the student is to the teacher.
+  public double getWarpDistance() { return warpDistance; }
+  public int size() { return frameArray.length; }
+
+  // This method turns the alignment into a printable String
+  public String toString() {
+    StringBuffer outStr = new StringBuffer("[");
+    for (int i = 0; i < frameArray.length; i++) {
+      outStr.append("(" + i + "," + frameArray[i] + ")");
+      if (i < frameArray.length-1) outStr.append(",");
+    }
+    return new String(outStr.append("]"));
+  }
+}
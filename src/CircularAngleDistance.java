@@ -0,0 +1,36 @@
+// Euclidean distance between angles, where each difference is taken the short way around the circle:
+// 359 and 1 degrees are 2 degrees apart, not 358.
+public class CircularAngleDistance implements DistanceFunction {
+   private static final double DEFAULT_PERIOD = 360.0;  // degrees
+   private final double period;
+   private final double halfPeriod;
+
+   public CircularAngleDistance() { this(DEFAULT_PERIOD); }
+   // @param : length of a full turn in the unit of the angles (360 for degrees, 2*PI for radians)
+   public CircularAngleDistance(double period) {
+      if (period <= 0.0) throw new InternalError("ERROR:  the period of a circular distance must be positive.");
+      this.period = period;
+      this.halfPeriod = period / 2.0;
+   }
+
+   public double calcDistance(double[] vector1, double[] vector2) {
+      if (vector1.length != vector2.length) throw new InternalError("ERROR:  cannot calculate the distance between vectors of different sizes.");
+      return calcDistance(vector1, 0, vector2, 0, vector1.length);
+   }
+   public double calcDistance(double[] values1, int offset1, double[] values2, int offset2, int length) {
+      double sqSum = 0.0;
+      for (int x=0; x < length; x++) {
+          final double diff = circularDiff(values1[offset1+x], values2[offset2+x]);
+          sqSum += diff*diff;
+      }
+      return Math.sqrt(sqSum);
+   }
+   public double calcDistance(double value1, double value2) { return circularDiff(value1, value2); }
+
+   // Shortest distance between two angles, between 0 and period/2.
+   private double circularDiff(double value1, double value2) {
+      double diff = Math.abs(value1-value2);
+      if (diff >= period) diff = diff % period;
+      return (diff > halfPeriod) ? period-diff : diff;
+   }
+}
\ No newline at end of file
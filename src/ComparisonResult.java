@@ -0,0 +1,47 @@
+// The outcome of aligning one student video with one teacher video in a BatchComparison.
+public class ComparisonResult {
+  // DATA
+  private final String studentFolder;
+  private final String teacherFolder;
+  private final String outputFileName;
+  private final BodyAlignment alignment;  // null if the pair failed
+  private final String error;             // null if the pair was aligned
+  private final double warpDistance;
+
+  // CONSTRUCTOR
+  // @param : the student's folder (or .angles container) as given in the manifest
+  // @param : the teacher's folder (or .angles container)
+  // @param : the JSON file the alignment was written to
+  // @param : the alignment, or null if it failed
+  // @param : why it failed, or null
+  public ComparisonResult(String studentFolder, String teacherFolder, String outputFileName, BodyAlignment alignment, String error) {
+    this.studentFolder = studentFolder;
+    this.teacherFolder = teacherFolder;
+    this.outputFileName = outputFileName;
+    this.alignment = alignment;
+    this.error = error;
+    this.warpDistance = (alignment != null) ? alignment.getWarpDistance() : Double.POSITIVE_INFINITY;
+  }
+
+  // A pair only the warp distance was worked out for (see NearestReferenceSearch): no alignment, no output file.
+  public ComparisonResult(String studentFolder, String teacherFolder, double warpDistance) {
+    this.studentFolder = studentFolder;
+    this.teacherFolder = teacherFolder;
+    this.outputFileName = null;
+    this.alignment = null;
+    this.error = null;
+    this.warpDistance = warpDistance;
+  }
+
+  public String getStudentFolder() { return studentFolder; }
+  public String getTeacherFolder() { return teacherFolder; }
+  public String getOutputFileName() { return outputFileName; }
+  public BodyAlignment getAlignment() { return alignment; }
+  public String getError() { return error; }
+  public boolean isAligned() { return alignment != null; }
+  public boolean hasFailed() { return error != null; }
+  // The warp distance of the pair, or +Infinity if it failed, so failed pairs rank last.
+  public double getWarpDistance() { return warpDistance; }
+
+  public String toString() { return studentFolder + " vs " + teacherFolder + ": " + (hasFailed() ? "failed (" + error + ")" : "warp distance " + warpDistance); }
+}
@@ -1,44 +1,110 @@
 import java.util.*;
-import java.io.FileOutputStream;
-import java.io.ObjectOutputStream;
-import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 public class DTW {
 
    public static WarpPath getWarpPathBetween(TimeSeries tsI, TimeSeries tsJ, int searchRadius, DistanceFunction distFn) {
-       return recursiveDTW(tsI, tsJ, searchRadius, distFn).getPath();
+       return recursiveDTW(tsI, tsJ, searchRadius, DTWOptions.DEFAULT_RESOLUTION_FACTOR, distFn, DTWOptions.DEFAULT_PARALLEL_FILL_THRESHOLD).getPath();
    }
    public static TimeWarpInfo getWarpInfoBetween(TimeSeries tsI, TimeSeries tsJ, int searchRadius, DistanceFunction distFn) {
-       return recursiveDTW(tsI, tsJ, searchRadius, distFn);
+       return recursiveDTW(tsI, tsJ, searchRadius, DTWOptions.DEFAULT_RESOLUTION_FACTOR, distFn, DTWOptions.DEFAULT_PARALLEL_FILL_THRESHOLD);
+   }
+   // The search radius (or the auto radius for these two series) and the resolution factor come from options.
+   // If options asks for a Sakoe-Chiba or Itakura band, the series are aligned in that band without the recursion.
+   // Unless the missing frames were stripped, NaN values are handled by options.getDistFn().
+   // Cost matrices of at least options.getParallelFillThreshold() cells are filled in parallel (see fillWavefront()).
+   public static WarpPath getWarpPathBetween(TimeSeries tsI, TimeSeries tsJ, DTWOptions options, DistanceFunction distFn) {
+       return getWarpInfoBetween(tsI, tsJ, options, distFn).getPath();
+   }
+   public static TimeWarpInfo getWarpInfoBetween(TimeSeries tsI, TimeSeries tsJ, DTWOptions options, DistanceFunction distFn) {
+       distFn = options.getDistFn(distFn, tsI, tsJ);
+       final SearchWindow band = options.createBandWindow(tsI.size(), tsJ.size());
+       if (band != null) return constrainedWarp(tsI, tsJ, band, distFn, options.getParallelFillThreshold());
+       return recursiveDTW(tsI, tsJ, options.getSearchRadius(tsI.size(), tsJ.size()), options.getResolutionFactor(), distFn, options.getParallelFillThreshold());
+   }
+
+   // Same as getWarpInfoBetween(tsI, tsJ, options, distFn) with tsJ = tsJpyramid.getSeries(), but the
+   // coarsenings of tsJ come out of the pyramid instead of being computed again (see ReferenceCache). The pyramid
+   // has to be built with options' resolution factor.
+   public static TimeWarpInfo getWarpInfoBetween(TimeSeries tsI, PAAPyramid tsJpyramid, DTWOptions options, DistanceFunction distFn) {
+       if (tsJpyramid.getResolutionFactor() != options.getResolutionFactor()) throw new InternalError("ERROR:  The PAA pyramid was built with a resolution factor of " + tsJpyramid.getResolutionFactor() + ", not " + options.getResolutionFactor());
+       final TimeSeries tsJ = tsJpyramid.getSeries();
+       distFn = options.getDistFn(distFn, tsI, tsJ);
+       final SearchWindow band = options.createBandWindow(tsI.size(), tsJ.size());
+       if (band != null) return constrainedWarp(tsI, tsJ, band, distFn, options.getParallelFillThreshold());
+       return recursiveDTW(tsI, tsJpyramid, 0, options.getSearchRadius(tsI.size(), tsJ.size()), distFn, options.getParallelFillThreshold());
    }
 
-   private static TimeWarpInfo recursiveDTW(TimeSeries tsI, TimeSeries tsJ, int searchRadius, DistanceFunction distFn) {
+   // Distance-only FastDTW for ranking: the same warp distance getWarpInfoBetween(tsI, tsJ, options, distFn) finds,
+   // but the finest resolution (or the band) is filled two columns at a time and no warp path is traced back.
+   // If the distance is more than upperBound, +Infinity is returned instead, and the fill stops at the first
+   // column where every cell is already over upperBound (every warp path goes through every column, and the
+   // costs only grow). The coarser resolutions still need their warp paths, so they are aligned as usual.
+   public static double getWarpDistBetween(TimeSeries tsI, TimeSeries tsJ, DTWOptions options, DistanceFunction distFn, double upperBound) {
+       return getWarpDistBetween(tsI, new PAAPyramid(tsJ, options.getResolutionFactor()), options, distFn, upperBound);
+   }
+   public static double getWarpDistBetween(TimeSeries tsI, PAAPyramid tsJpyramid, DTWOptions options, DistanceFunction distFn, double upperBound) {
+       if (tsJpyramid.getResolutionFactor() != options.getResolutionFactor()) throw new InternalError("ERROR:  The PAA pyramid was built with a resolution factor of " + tsJpyramid.getResolutionFactor() + ", not " + options.getResolutionFactor());
+       final TimeSeries tsJ = tsJpyramid.getSeries();
+       distFn = options.getDistFn(distFn, tsI, tsJ);
+       final SearchWindow band = options.createBandWindow(tsI.size(), tsJ.size());
+       if (band != null) return getWarpDistBetween(tsI, tsJ, band, distFn, upperBound);
+       final int searchRadius = Math.max(0, options.getSearchRadius(tsI.size(), tsJ.size()));
+       final int minTSsize = searchRadius + 2;
+       if ( (tsI.size() <= minTSsize) || (tsJ.size() <= minTSsize) || !canShrink(tsI, tsJ, tsJpyramid.getResolutionFactor()) ) return fullWarpDist(tsI, tsJ, distFn, upperBound);
+       final PAA shrunkI = new PAA(tsI, (int)(tsI.size()/tsJpyramid.getResolutionFactor()));
+       final PAA shrunkJ = (PAA)tsJpyramid.getLevel(1);
+       final SearchWindow window = new ExpandedResWindow(tsI, tsJ, shrunkI, shrunkJ, recursiveDTW(shrunkI, tsJpyramid, 1, searchRadius, distFn, options.getParallelFillThreshold()).getPath(), searchRadius);
+       return getWarpDistBetween(tsI, tsJ, window, distFn, upperBound);
+   }
+
+   private static TimeWarpInfo recursiveDTW(TimeSeries tsI, TimeSeries tsJ, int searchRadius, double resolutionFactor, DistanceFunction distFn, long parallelFillThreshold) {
+      return recursiveDTW(tsI, new PAAPyramid(tsJ, resolutionFactor), 0, searchRadius, distFn, parallelFillThreshold);
+   }
+
+   // tsJ is level tsJlevel of the pyramid; tsI is shrunk alongside it.
+   private static TimeWarpInfo recursiveDTW(TimeSeries tsI, PAAPyramid tsJpyramid, int tsJlevel, int searchRadius, DistanceFunction distFn, long parallelFillThreshold) {
       if (searchRadius < 0) searchRadius = 0;
       final int minTSsize = searchRadius + 2;
-      if ( (tsI.size() <= minTSsize) || (tsJ.size() <= minTSsize) ) { return timeWarp(tsI, tsJ, distFn); }
+      final TimeSeries tsJ = tsJpyramid.getLevel(tsJlevel);
+      if ( (tsI.size() <= minTSsize) || (tsJ.size() <= minTSsize) || !canShrink(tsI, tsJ, tsJpyramid.getResolutionFactor()) ) { return timeWarp(tsI, tsJ, distFn, parallelFillThreshold); }
       else {
-         final double resolutionFactor = 2.0;
-
-         final PAA shrunkI = new PAA(tsI, (int)(tsI.size()/resolutionFactor));
-         final PAA shrunkJ = new PAA(tsJ, (int)(tsJ.size()/resolutionFactor));
+         final PAA shrunkI = new PAA(tsI, (int)(tsI.size()/tsJpyramid.getResolutionFactor()));
+         final PAA shrunkJ = (PAA)tsJpyramid.getLevel(tsJlevel+1);
 
           // Determine the search window that constrains the area of the cost matrix that will be evaluated based on the warp path found at the previous resolution (smaller time series).
-          final SearchWindow window = new ExpandedResWindow(tsI, tsJ, shrunkI, shrunkJ, getWarpPathBetween(shrunkI, shrunkJ, searchRadius, distFn), searchRadius);
+          final SearchWindow window = new ExpandedResWindow(tsI, tsJ, shrunkI, shrunkJ, recursiveDTW(shrunkI, tsJpyramid, tsJlevel+1, searchRadius, distFn, parallelFillThreshold).getPath(), searchRadius);
          // Find the optimal warp path through this search window constraint.
-         return getWarpInfoBetween(tsI, tsJ, window, distFn);
+         return constrainedWarp(tsI, tsJ, window, distFn, parallelFillThreshold);
       }
    }
 
+  // False if shrinking either series by resolutionFactor would leave it with no points, which is as far as the
+  // recursion can go.
+  private static boolean canShrink(TimeSeries tsI, TimeSeries tsJ, double resolutionFactor) {
+      return (int)(tsI.size()/resolutionFactor) >= 1 && (int)(tsJ.size()/resolutionFactor) >= 1;
+  }
+
   public static double calcWarpCost(WarpPath path, TimeSeries tsI, TimeSeries tsJ, DistanceFunction distFn) {
+      checkDimensions(tsI, tsJ);
+      final int numOfDimensions = tsI.numOfDimensions();
+      final double[] tsIvalues = tsI.measurementArray();
+      final double[] tsJvalues = tsJ.measurementArray();
       double totalCost = 0.0;
       for (int p=0; p<path.size(); p++) {
-         final ColMajorCell currWarp = path.get(p);
-         totalCost += distFn.calcDistance(tsI.getMeasurementVector(currWarp.getCol()), tsJ.getMeasurementVector(currWarp.getRow()));
+         totalCost += distance(distFn, tsIvalues, path.getI(p), tsJvalues, path.getJ(p), numOfDimensions);
       }
       return totalCost;
   }
 
-  private static TimeWarpInfo timeWarp(TimeSeries tsI, TimeSeries tsJ, DistanceFunction distFn) {
+  private static TimeWarpInfo timeWarp(TimeSeries tsI, TimeSeries tsJ, DistanceFunction distFn, long parallelFillThreshold) {
+    checkDimensions(tsI, tsJ);
+    final int numOfDimensions = tsI.numOfDimensions();
+    final double[] tsIvalues = tsI.measurementArray();
+    final double[] tsJvalues = tsJ.measurementArray();
     //     COST MATRIX:
     //   5|_|_|_|_|_|_|E| E = min Global Cost
     //   4|_|_|_|_|_|_|_| S = Start point
@@ -54,14 +120,18 @@ public class DTW {
     final int maxI = tsI.size()-1;
     final int maxJ = tsJ.size()-1;
 
-    costMatrix[0][0] = distFn.calcDistance(tsI.getMeasurementVector(0), tsJ.getMeasurementVector(0));
-    for (int j=1; j<=maxJ; j++) costMatrix[0][j] = costMatrix[0][j-1] + distFn.calcDistance(tsI.getMeasurementVector(0), tsJ.getMeasurementVector(j));
-    for (int i=1; i<=maxI; i++) {  // i = columns
-        costMatrix[i][0] = costMatrix[i-1][0] + distFn.calcDistance(tsI.getMeasurementVector(i), tsJ.getMeasurementVector(0));
-        for (int j=1; j<=maxJ; j++) { // j = rows
-          final double minGlobalCost = Math.min(costMatrix[i-1][j], Math.min(costMatrix[i-1][j-1], costMatrix[i][j-1]));
-          costMatrix[i][j] = minGlobalCost + distFn.calcDistance(tsI.getMeasurementVector(i), tsJ.getMeasurementVector(j));
-        }
+    if (isParallelFill((long)tsI.size()*tsJ.size(), parallelFillThreshold)) fillWavefront(costMatrix, tsIvalues, tsJvalues, maxI, maxJ, numOfDimensions, distFn);
+    else if (numOfDimensions == 1) fillScalarCostMatrix(costMatrix, tsIvalues, tsJvalues, maxI, maxJ, distFn);
+    else {
+      costMatrix[0][0] = distance(distFn, tsIvalues, 0, tsJvalues, 0, numOfDimensions);
+      for (int j=1; j<=maxJ; j++) costMatrix[0][j] = costMatrix[0][j-1] + distance(distFn, tsIvalues, 0, tsJvalues, j, numOfDimensions);
+      for (int i=1; i<=maxI; i++) {  // i = columns
+          costMatrix[i][0] = costMatrix[i-1][0] + distance(distFn, tsIvalues, i, tsJvalues, 0, numOfDimensions);
+          for (int j=1; j<=maxJ; j++) { // j = rows
+            final double minGlobalCost = Math.min(costMatrix[i-1][j], Math.min(costMatrix[i-1][j-1], costMatrix[i][j-1]));
+            costMatrix[i][j] = minGlobalCost + distance(distFn, tsIvalues, i, tsJvalues, j, numOfDimensions);
+          }
+      }
     }
 
     final double minimumCost = costMatrix[maxI][maxJ];
@@ -71,10 +141,14 @@ public class DTW {
     //    the matrix 1 step left, down, or diagonal, whichever has the
     //    smallest cost.  Favor diagonal moves and moves towards the i==j
     //    axis to break ties.
-    final WarpPath minCostPath = new WarpPath(maxI+maxJ-1);
+    final WarpPath minCostPath = new WarpPath(maxI+maxJ+1);  // the longest possible path, so addFirst() never has to grow
+    // Cost matrix value of every cell on the path (filled back to front), WarpPath.createAngleMap needs them.
+    final double[] pathCosts = new double[maxI+maxJ+1];
+    int p = pathCosts.length-1;
     int i = maxI;
     int j = maxJ;
     minCostPath.addFirst(i, j);
+    pathCosts[p] = costMatrix[i][j];
     while ((i>0) || (j>0)) {
       // Find the costs of moving in all three possible directions (left,
       //    down, and diagonal (down and left at the same time).
@@ -102,28 +176,22 @@ public class DTW {
          
         // Add the current step to the warp path.
         minCostPath.addFirst(i, j);
+        pathCosts[--p] = costMatrix[i][j];
     }
 
-    // <<I index, J index>, cost>
-    HashMap<ArrayList<Integer>, Double> costMatrixMap = new HashMap<>();
-    for (int a = 0; a < tsI.size(); a++) {
-      for (int b = 0; b < tsJ.size(); b++) {
-        ArrayList<Integer> indexes = new ArrayList<>();
-        indexes.add(a);
-        indexes.add(b);
-        costMatrixMap.put(indexes, costMatrix[a][b]);
-      }
-    } try {
-      FileOutputStream fos = new FileOutputStream("costMatrixHashmap.ser");
-      ObjectOutputStream oos = new ObjectOutputStream(fos);
-      oos.writeObject(costMatrixMap);
-      oos.close();
-      fos.close();
-    } catch (IOException ioe) { ioe.printStackTrace(); }
-    return new TimeWarpInfo(minimumCost, minCostPath);
+    return new TimeWarpInfo(minimumCost, minCostPath, Arrays.copyOfRange(pathCosts, p, pathCosts.length));
   }
 
   public static double getWarpDistBetween(TimeSeries tsI, TimeSeries tsJ, SearchWindow window, DistanceFunction distFn) {
+    return getWarpDistBetween(tsI, tsJ, window, distFn, Double.POSITIVE_INFINITY);
+  }
+
+  // Same, but +Infinity is returned as soon as a whole column of the window costs more than upperBound.
+  public static double getWarpDistBetween(TimeSeries tsI, TimeSeries tsJ, SearchWindow window, DistanceFunction distFn, double upperBound) {
+    checkDimensions(tsI, tsJ);
+    final int numOfDimensions = tsI.numOfDimensions();
+    final double[] tsIvalues = tsI.measurementArray();
+    final double[] tsJvalues = tsJ.measurementArray();
     //     COST MATRIX:
     //   5|_|_|_|_|_|_|E| E = min Global Cost
     //   4|_|_|_|_|_|_|_| S = Start point
@@ -138,33 +206,72 @@ public class DTW {
     final int maxI = tsI.size()-1;
     final int maxJ = tsJ.size()-1;
 
-    // Get an iterator that traverses the window cells in the order that the cost matrix is filled. (first to last row (1..maxI), bottom to top (1..MaxJ)
-    final Iterator<Object> matrixIterator = window.iterator();
-    while (matrixIterator.hasNext()) {
-      final ColMajorCell currentCell = (ColMajorCell)matrixIterator.next();  // current cell being filled
-      final int i = currentCell.getCol();
-      final int j = currentCell.getRow();
-      if ( (i==0) && (j==0) )      // bottom left cell (first row AND first column)
-            costMatrix.put(i, j, distFn.calcDistance(tsI.getMeasurementVector(0), tsJ.getMeasurementVector(0)));
+    // Traverse the window cells in the order that the cost matrix is filled. (first to last column (0..maxI), bottom to top (minJforI..maxJforI))
+    for (int i=window.minI(); i<=window.maxI(); i++) {
+      final int maxJforI = window.maxJforI(i);
+      double minColCost = Double.POSITIVE_INFINITY;
+      for (int j=window.minJforI(i); j<=maxJforI; j++) {
+        final double cost;
+        if ( (i==0) && (j==0) )      // bottom left cell (first row AND first column)
+            cost = distance(distFn, tsIvalues, 0, tsJvalues, 0, numOfDimensions);
         else if (i == 0) // first column
         {
-          costMatrix.put(i, j, distFn.calcDistance(tsI.getMeasurementVector(0), tsJ.getMeasurementVector(j)) + costMatrix.get(i, j-1));
+          cost = distance(distFn, tsIvalues, 0, tsJvalues, j, numOfDimensions) + costMatrix.get(i, j-1);
         }
         else if (j == 0) // first row
         {
-          costMatrix.put(i, j, distFn.calcDistance(tsI.getMeasurementVector(i), tsJ.getMeasurementVector(0)) + costMatrix.get(i-1, j));
+          cost = distance(distFn, tsIvalues, i, tsJvalues, 0, numOfDimensions) + costMatrix.get(i-1, j);
         }
         else // not first column or first row
         {
           final double minGlobalCost = Math.min(costMatrix.get(i-1, j), Math.min(costMatrix.get(i-1, j-1), costMatrix.get(i, j-1)));
-          costMatrix.put(i, j, minGlobalCost + distFn.calcDistance(tsI.getMeasurementVector(i), tsJ.getMeasurementVector(j)));
+          cost = minGlobalCost + distance(distFn, tsIvalues, i, tsJvalues, j, numOfDimensions);
         }
+        costMatrix.put(i, j, cost);
+        if (cost < minColCost) minColCost = cost;
       }
+      // every warp path goes through this column, so none of them can come in under upperBound any more
+      if (minColCost > upperBound) return Double.POSITIVE_INFINITY;
+    }
       // min cost is at (maxI, maxJ)
-      return costMatrix.get(maxI, maxJ);
+      final double minimumCost = costMatrix.get(maxI, maxJ);
+      return (minimumCost > upperBound) ? Double.POSITIVE_INFINITY : minimumCost;
    }
-  public static TimeWarpInfo getWarpInfoBetween(TimeSeries tsI, TimeSeries tsJ, SearchWindow window, DistanceFunction distFn) { return constrainedWarp(tsI, tsJ, window, distFn); }
-  private static TimeWarpInfo constrainedWarp(TimeSeries tsI, TimeSeries tsJ, SearchWindow window, DistanceFunction distFn) {
+
+  // The distance timeWarp() finds (same cells, same arithmetic), two columns at a time and without the warp path.
+  // +Infinity as soon as a whole column costs more than upperBound.
+  private static double fullWarpDist(TimeSeries tsI, TimeSeries tsJ, DistanceFunction distFn, double upperBound) {
+    checkDimensions(tsI, tsJ);
+    final int numOfDimensions = tsI.numOfDimensions();
+    final double[] tsIvalues = tsI.measurementArray();
+    final double[] tsJvalues = tsJ.measurementArray();
+    final int maxI = tsI.size()-1;
+    final int maxJ = tsJ.size()-1;
+    double[] lastCol = new double[maxJ+1];
+    double[] currCol = new double[maxJ+1];
+    for (int i=0; i<=maxI; i++) {
+      if (i == 0) {
+        currCol[0] = distance(distFn, tsIvalues, 0, tsJvalues, 0, numOfDimensions);
+        for (int j=1; j<=maxJ; j++) currCol[j] = currCol[j-1] + distance(distFn, tsIvalues, 0, tsJvalues, j, numOfDimensions);
+      } else {
+        currCol[0] = lastCol[0] + distance(distFn, tsIvalues, i, tsJvalues, 0, numOfDimensions);
+        for (int j=1; j<=maxJ; j++) currCol[j] = Math.min(lastCol[j], Math.min(lastCol[j-1], currCol[j-1])) + distance(distFn, tsIvalues, i, tsJvalues, j, numOfDimensions);
+      }
+      double minColCost = currCol[0];
+      for (int j=1; j<=maxJ; j++) if (currCol[j] < minColCost) minColCost = currCol[j];
+      if (minColCost > upperBound) return Double.POSITIVE_INFINITY;
+      final double[] swap = lastCol;
+      lastCol = currCol;
+      currCol = swap;
+    }
+    return (lastCol[maxJ] > upperBound) ? Double.POSITIVE_INFINITY : lastCol[maxJ];
+  }
+  public static TimeWarpInfo getWarpInfoBetween(TimeSeries tsI, TimeSeries tsJ, SearchWindow window, DistanceFunction distFn) { return constrainedWarp(tsI, tsJ, window, distFn, DTWOptions.DEFAULT_PARALLEL_FILL_THRESHOLD); }
+  private static TimeWarpInfo constrainedWarp(TimeSeries tsI, TimeSeries tsJ, SearchWindow window, DistanceFunction distFn, long parallelFillThreshold) {
+    checkDimensions(tsI, tsJ);
+    final int numOfDimensions = tsI.numOfDimensions();
+    final double[] tsIvalues = tsI.measurementArray();
+    final double[] tsJvalues = tsJ.measurementArray();
     //     COST MATRIX:
     //   5|_|_|_|_|_|_|E| E = min Global Cost
     //   4|_|_|_|_|_|_|_| S = Start point
@@ -179,28 +286,28 @@ public class DTW {
     final int maxI = tsI.size()-1;
     final int maxJ = tsJ.size()-1;
 
-    // Get an iterator that traverses the window cells in the order that the cost matrix is filled.
-    //    (first to last row (1..maxI), bottom to top (1..MaxJ)
-    final Iterator<Object> matrixIterator = window.iterator();
-    while (matrixIterator.hasNext()) {
-      final ColMajorCell currentCell = (ColMajorCell)matrixIterator.next();  // current cell being filled
-      final int i = currentCell.getCol();
-      final int j = currentCell.getRow();
-
-      if ( (i==0) && (j==0) ) // bottom left cell (first row AND first column)
-        costMatrix.put(i, j, distFn.calcDistance(tsI.getMeasurementVector(0), tsJ.getMeasurementVector(0)));
-      else if (i == 0)        // first column
-      {
-        costMatrix.put(i, j, distFn.calcDistance(tsI.getMeasurementVector(0), tsJ.getMeasurementVector(j)) + costMatrix.get(i, j-1));
-      }
-      else if (j == 0)        // first row
-      {
-        costMatrix.put(i, j, distFn.calcDistance(tsI.getMeasurementVector(i), tsJ.getMeasurementVector(0)) + costMatrix.get(i-1, j));
-      }
-      else                    // not first column or first row
-      {
-        final double minGlobalCost = Math.min(costMatrix.get(i-1, j), Math.min(costMatrix.get(i-1, j-1), costMatrix.get(i, j-1)));
-        costMatrix.put(i, j, minGlobalCost + distFn.calcDistance(tsI.getMeasurementVector(i), tsJ.getMeasurementVector(j)));
+    // Traverse the window cells in the order that the cost matrix is filled.
+    //    (first to last column (0..maxI), bottom to top (minJforI..maxJforI)
+    // A big window that fits in memory is filled in parallel instead, cell for cell the same.
+    if (isParallelFill(window.size(), parallelFillThreshold) && costMatrix.isInMemory()) fillWavefront(costMatrix, window, tsIvalues, tsJvalues, numOfDimensions, distFn);
+    else for (int i=window.minI(); i<=window.maxI(); i++) {
+      final int maxJforI = window.maxJforI(i);
+      for (int j=window.minJforI(i); j<=maxJforI; j++) {
+        if ( (i==0) && (j==0) ) // bottom left cell (first row AND first column)
+          costMatrix.put(i, j, distance(distFn, tsIvalues, 0, tsJvalues, 0, numOfDimensions));
+        else if (i == 0)        // first column
+        {
+          costMatrix.put(i, j, distance(distFn, tsIvalues, 0, tsJvalues, j, numOfDimensions) + costMatrix.get(i, j-1));
+        }
+        else if (j == 0)        // first row
+        {
+          costMatrix.put(i, j, distance(distFn, tsIvalues, i, tsJvalues, 0, numOfDimensions) + costMatrix.get(i-1, j));
+        }
+        else                    // not first column or first row
+        {
+          final double minGlobalCost = Math.min(costMatrix.get(i-1, j), Math.min(costMatrix.get(i-1, j-1), costMatrix.get(i, j-1)));
+          costMatrix.put(i, j, minGlobalCost + distance(distFn, tsIvalues, i, tsJvalues, j, numOfDimensions));
+        }
       }
     }
     // Minimum Cost is at (maxI, maxJ)
@@ -211,10 +318,13 @@ public class DTW {
     //    the matrix 1 step left, down, or diagonal, whichever has the
     //    smallest cost.  Favoer diagonal moves and moves towards the i==j
     //    axis to break ties.
-    final WarpPath minCostPath = new WarpPath(maxI+maxJ-1);
+    final WarpPath minCostPath = new WarpPath(maxI+maxJ+1);  // the longest possible path, so addFirst() never has to grow
+    final double[] pathCosts = new double[maxI+maxJ+1];
+    int p = pathCosts.length-1;
     int i = maxI;
     int j = maxJ;
     minCostPath.addFirst(i, j);
+    pathCosts[p] = minimumCost;
     while ((i>0) || (j>0))
     {
     // Find the costs of moving in all three possible directions (left,
@@ -243,10 +353,150 @@ public class DTW {
       i--;
     // Add the current step to the warp path.
     minCostPath.addFirst(i, j);
+    pathCosts[--p] = costMatrix.get(i, j);
     }  // end while loop
 
     // Free any rescources associated with the costMatrix (a swap file may have been created if the swa file did not fit into main memory).
     costMatrix.freeMemory();  
-    return new TimeWarpInfo(minimumCost, minCostPath);
+    return new TimeWarpInfo(minimumCost, minCostPath, Arrays.copyOfRange(pathCosts, p, pathCosts.length));
    }
+
+  // A cost matrix of numOfCells cells is filled in parallel if it is big enough and there are cores to do it on.
+  private static boolean isParallelFill(long numOfCells, long parallelFillThreshold) {
+    return numOfCells >= parallelFillThreshold && ForkJoinPool.getCommonPoolParallelism() > 1;
+  }
+
+  // Parallel fill of timeWarp()'s cost matrix: the matrix is cut into tiles of PARALLEL_TILE_SIZE x
+  // PARALLEL_TILE_SIZE cells, and a tile only needs the tiles to its left, below it and diagonally below-left of it.
+  // So the tiles are filled one anti-diagonal (wavefront) after another, with the tiles of a wavefront in parallel.
+  // Every cell is computed from the same three neighbours with the same arithmetic as the sequential loops, so
+  // the costs, and with them the warp path, come out bit for bit the same.
+  private static void fillWavefront(final double[][] costMatrix, final double[] tsIvalues, final double[] tsJvalues, final int maxI, final int maxJ, final int numOfDimensions, final DistanceFunction distFn) {
+    final int tileSize = DTWOptions.PARALLEL_TILE_SIZE;
+    final int[] minTileRow = new int[maxI/tileSize + 1];
+    final int[] maxTileRow = new int[minTileRow.length];
+    Arrays.fill(maxTileRow, maxJ/tileSize);
+    runWavefront(minTileRow, maxTileRow, (tileI, tileJ) -> {
+      final int lastI = Math.min(maxI, (tileI+1)*tileSize - 1);
+      final int lastJ = Math.min(maxJ, (tileJ+1)*tileSize - 1);
+      for (int i=tileI*tileSize; i<=lastI; i++) {
+        final double[] currCol = costMatrix[i];
+        final double[] lastCol = (i > 0) ? costMatrix[i-1] : null;
+        for (int j=tileJ*tileSize; j<=lastJ; j++) {
+          final double distance = distance(distFn, tsIvalues, i, tsJvalues, j, numOfDimensions);
+          if ( (i==0) && (j==0) ) currCol[j] = distance;
+          else if (i == 0) currCol[j] = currCol[j-1] + distance;
+          else if (j == 0) currCol[j] = lastCol[j] + distance;
+          else currCol[j] = Math.min(lastCol[j], Math.min(lastCol[j-1], currCol[j-1])) + distance;
+        }
+      }
+    });
+  }
+
+  // Same, for constrainedWarp()'s cost matrix: only the tiles the window reaches into are filled, and within them
+  // only the window's cells.
+  private static void fillWavefront(final CostMatrix costMatrix, final SearchWindow window, final double[] tsIvalues, final double[] tsJvalues, final int numOfDimensions, final DistanceFunction distFn) {
+    final int tileSize = DTWOptions.PARALLEL_TILE_SIZE;
+    final int[] minTileRow = new int[window.maxI()/tileSize + 1];
+    final int[] maxTileRow = new int[minTileRow.length];
+    Arrays.fill(minTileRow, Integer.MAX_VALUE);
+    Arrays.fill(maxTileRow, -1);
+    for (int i=window.minI(); i<=window.maxI(); i++) {
+      minTileRow[i/tileSize] = Math.min(minTileRow[i/tileSize], window.minJforI(i)/tileSize);
+      maxTileRow[i/tileSize] = Math.max(maxTileRow[i/tileSize], window.maxJforI(i)/tileSize);
+    }
+    runWavefront(minTileRow, maxTileRow, (tileI, tileJ) -> {
+      final int lastI = Math.min(window.maxI(), (tileI+1)*tileSize - 1);
+      for (int i=tileI*tileSize; i<=lastI; i++) {
+        final int maxJforI = Math.min(window.maxJforI(i), (tileJ+1)*tileSize - 1);
+        for (int j=Math.max(window.minJforI(i), tileJ*tileSize); j<=maxJforI; j++) {
+          if ( (i==0) && (j==0) )
+            costMatrix.put(i, j, distance(distFn, tsIvalues, 0, tsJvalues, 0, numOfDimensions));
+          else if (i == 0)
+            costMatrix.put(i, j, distance(distFn, tsIvalues, 0, tsJvalues, j, numOfDimensions) + costMatrix.get(i, j-1));
+          else if (j == 0)
+            costMatrix.put(i, j, distance(distFn, tsIvalues, i, tsJvalues, 0, numOfDimensions) + costMatrix.get(i-1, j));
+          else {
+            final double minGlobalCost = Math.min(costMatrix.get(i-1, j), Math.min(costMatrix.get(i-1, j-1), costMatrix.get(i, j-1)));
+            costMatrix.put(i, j, minGlobalCost + distance(distFn, tsIvalues, i, tsJvalues, j, numOfDimensions));
+          }
+        }
+      }
+    });
+  }
+
+  // One tile of a wavefront fill.
+  private interface TileFill { void fill(int tileI, int tileJ); }
+
+  // Fills tile (tileI, tileJ) for every tile column tileI and every tile row from minTileRow[tileI] to
+  // maxTileRow[tileI], one anti-diagonal (tileI+tileJ) at a time; the tiles of an anti-diagonal run in parallel
+  // on the common ForkJoinPool, and each anti-diagonal only starts once the one before it is done.
+  private static void runWavefront(int[] minTileRow, int[] maxTileRow, TileFill tileFill) {
+    int lastWave = -1;
+    int maxRow = 0;
+    for (int tileI=0; tileI<minTileRow.length; tileI++) {
+      lastWave = Math.max(lastWave, tileI + maxTileRow[tileI]);
+      maxRow = Math.max(maxRow, maxTileRow[tileI]);
+    }
+    final ArrayList<Callable<Void>> tiles = new ArrayList<>();
+    for (int wave=0; wave<=lastWave; wave++) {
+      tiles.clear();
+      int firstTileI = -1;
+      for (int tileI=Math.max(0, wave-maxRow); tileI<=Math.min(wave, minTileRow.length-1); tileI++) {
+        final int tileJ = wave - tileI;
+        if (tileJ < minTileRow[tileI] || tileJ > maxTileRow[tileI]) continue;
+        if (firstTileI < 0) firstTileI = tileI;
+        final int column = tileI;
+        tiles.add(() -> {
+          tileFill.fill(column, tileJ);
+          return null;
+        });
+      }
+      // a wavefront of one tile (the corners, or a narrow window) isn't worth a trip through the pool
+      if (tiles.size() == 1) tileFill.fill(firstTileI, wave - firstTileI);
+      else if (tiles.size() > 1) {
+        try {
+          for (Future<Void> tile:ForkJoinPool.commonPool().invokeAll(tiles)) tile.get();
+        } catch (ExecutionException e) {
+          if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+          if (e.getCause() instanceof Error) throw (Error) e.getCause();
+          throw new InternalError(e.getCause());
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InternalError("ERROR:  The cost matrix fill was interrupted");
+        }
+      }
+    }
+  }
+
+  // Same cells and the same arithmetic as the general loop in timeWarp(), for 1-dimensional time series.
+  // The distances of a whole column are computed first in their own loop (no dependency between the cells, so
+  // the JIT can unroll/vectorize it), then the running minimum is added on top.
+  private static void fillScalarCostMatrix(double[][] costMatrix, double[] tsIvalues, double[] tsJvalues, int maxI, int maxJ, DistanceFunction distFn) {
+    final double[] colDistances = new double[maxJ+1];
+    double[] currCol = costMatrix[0];
+    final double firstI = tsIvalues[0];
+    for (int j=0; j<=maxJ; j++) colDistances[j] = distFn.calcDistance(firstI, tsJvalues[j]);
+    currCol[0] = colDistances[0];
+    for (int j=1; j<=maxJ; j++) currCol[j] = currCol[j-1] + colDistances[j];
+    for (int i=1; i<=maxI; i++) {
+      final double[] lastCol = currCol;
+      currCol = costMatrix[i];
+      final double currI = tsIvalues[i];
+      for (int j=0; j<=maxJ; j++) colDistances[j] = distFn.calcDistance(currI, tsJvalues[j]);
+      currCol[0] = lastCol[0] + colDistances[0];
+      for (int j=1; j<=maxJ; j++) currCol[j] = Math.min(lastCol[j], Math.min(lastCol[j-1], currCol[j-1])) + colDistances[j];
+    }
+  }
+
+  // Distance between point i of tsI and point j of tsJ, read straight out of the flat measurement arrays.
+  // 1-dimensional points skip the offset arithmetic and the loop of the general calcDistance().
+  private static double distance(DistanceFunction distFn, double[] tsIvalues, int i, double[] tsJvalues, int j, int numOfDimensions) {
+    if (numOfDimensions == 1) return distFn.calcDistance(tsIvalues[i], tsJvalues[j]);
+    return distFn.calcDistance(tsIvalues, i*numOfDimensions, tsJvalues, j*numOfDimensions, numOfDimensions);
+  }
+
+  private static void checkDimensions(TimeSeries tsI, TimeSeries tsJ) {
+    if (tsI.numOfDimensions() != tsJ.numOfDimensions()) throw new InternalError("ERROR:  cannot calculate the distance between vectors of different sizes.");
+  }
 }
\ No newline at end of file
@@ -0,0 +1,282 @@
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// The tunables of the FastDTW recursion in DTW.
+// searchRadius: how many cells the warp path found at the coarser resolution is widened by before it is projected
+// onto the next finer resolution. Series no longer than searchRadius + 2 are aligned with full DTW.
+// resolutionFactor: how much PAA shrinks the series at every step of the recursion (must be more than 1).
+// With an auto search radius the radius is picked from the lengths of the series being aligned (see
+// getSearchRadius()), so short clips still get exact full DTW while minutes of video get a small, constant
+// radius and with it linear time.
+// Instead of the recursion, the alignment can also be constrained to a fixed band around the diagonal: a
+// SakoeChibaWindow or an ItakuraParallelogramWindow (see setSakoeChibaWindow() / setItakuraWindow()).
+// The missing policy says what happens to missing frames (OpenPose dropouts, which come in as 0 angles): they are
+// stripped from the series before DTW (the default), or they stay in as NaN and DTW either warps past them at
+// missingCost times the mean distance of the two series (skip, see getDistFn()) or fills them in from their
+// neighbours first (interpolate).
+// Cost matrices of at least parallelFillThreshold cells are filled on several cores (DTW.fillWavefront()); the
+// result is the same either way, so this is only about when the threads are worth it.
+// The rest says how Main aligns a body (see Main.bodyDTW()): how many segments are aligned at once, the folder every
+// segment's AngleMap is also saved in (null for none), the distance function of every segment (see
+// getSegmentDistFn()) and the cache the student segments come out of (null to read them every time).
+public class DTWOptions {
+  public static final int DEFAULT_SEARCH_RADIUS = 500;
+  public static final double DEFAULT_RESOLUTION_FACTOR = 2.0;
+  // Auto mode: series up to this many frames are aligned with full DTW (at most 200 * 200 cells).
+  public static final int AUTO_FULL_DTW_MAX_SIZE = 200;
+  // Auto mode: the radius is a hundredth of the longer series, but never outside these bounds.
+  public static final int AUTO_MIN_SEARCH_RADIUS = 10;
+  public static final int AUTO_MAX_SEARCH_RADIUS = 30;
+  // The window types.
+  public static final int FASTDTW_WINDOW = 0;
+  public static final int SAKOE_CHIBA_WINDOW = 1;
+  public static final int ITAKURA_WINDOW = 2;
+  // A Sakoe-Chiba band without a given radius is this fraction of the longer series wide on both sides.
+  public static final double DEFAULT_BAND_FRACTION = 0.1;
+  // The missing policies.
+  public static final int STRIP_MISSING = 0;
+  public static final int SKIP_MISSING = 1;
+  public static final int INTERPOLATE_MISSING = 2;
+  // With skip, a missing frame costs about what a step between the two series costs, whatever the metric and the
+  // number of dimensions. At 0 the dropouts would be free and the path would run through them instead of the
+  // frames that are there.
+  public static final double DEFAULT_MISSING_COST = 1.0;
+  // About 4 million cells (a 2048 * 2048 full matrix); smaller matrices fill faster on one core.
+  public static final long DEFAULT_PARALLEL_FILL_THRESHOLD = 1L << 22;
+  // The side of the square tiles of the parallel fill.
+  public static final int PARALLEL_TILE_SIZE = 128;
+
+  private int searchRadius;
+  private double resolutionFactor;
+  private boolean isAutoSearchRadius;
+  private int windowType = FASTDTW_WINDOW;
+  private int bandRadius = -1;
+  private double maxSlope = ItakuraParallelogramWindow.DEFAULT_MAX_SLOPE;
+  private int missingPolicy = STRIP_MISSING;
+  private double missingCost = DEFAULT_MISSING_COST;
+  private long parallelFillThreshold = DEFAULT_PARALLEL_FILL_THRESHOLD;
+  private int numOfThreads = 1;
+  private File checkpointDir;
+  private LinkedHashMap<String, DistanceFunction> segmentDistFns = new LinkedHashMap<>();
+  private ReferenceCache studentCache;
+
+  public DTWOptions() { this(DEFAULT_SEARCH_RADIUS, DEFAULT_RESOLUTION_FACTOR); }
+
+  public DTWOptions(int searchRadius, double resolutionFactor) {
+    setSearchRadius(searchRadius);
+    setResolutionFactor(resolutionFactor);
+  }
+
+  // A copy of options, e.g. to align one pair of a batch differently from the rest.
+  public DTWOptions(DTWOptions options) {
+    searchRadius = options.searchRadius;
+    resolutionFactor = options.resolutionFactor;
+    isAutoSearchRadius = options.isAutoSearchRadius;
+    windowType = options.windowType;
+    bandRadius = options.bandRadius;
+    maxSlope = options.maxSlope;
+    missingPolicy = options.missingPolicy;
+    missingCost = options.missingCost;
+    parallelFillThreshold = options.parallelFillThreshold;
+    numOfThreads = options.numOfThreads;
+    checkpointDir = options.checkpointDir;
+    segmentDistFns = new LinkedHashMap<>(options.segmentDistFns);
+    studentCache = options.studentCache;
+  }
+
+  // Reads --radius N|auto and --resolution F (both optional) from the value strings, which may be null.
+  public static DTWOptions parse(String searchRadius, String resolutionFactor) { return parse(searchRadius, resolutionFactor, null); }
+
+  public static DTWOptions parse(String searchRadius, String resolutionFactor, String window) { return parse(searchRadius, resolutionFactor, window, null); }
+
+  // Same, plus --window fastdtw|sakoe-chiba[:R]|itakura[:S], where R is the band radius and S the maximum slope,
+  // and --missing strip|skip[:C]|interpolate, where C is the cost of warping past a missing frame, as a multiple of
+  // the mean distance of the two series (DEFAULT_MISSING_COST without it).
+  public static DTWOptions parse(String searchRadius, String resolutionFactor, String window, String missing) {
+    DTWOptions options = new DTWOptions();
+    if (searchRadius != null) {
+      if (searchRadius.equalsIgnoreCase("auto")) options.setAutoSearchRadius();
+      else options.setSearchRadius((int) parseNumber(searchRadius, "search radius", true));
+    }
+    if (resolutionFactor != null) options.setResolutionFactor(parseNumber(resolutionFactor, "resolution factor", false));
+    if (window != null) {
+      final String name = window.trim().toLowerCase();
+      final int colon = name.indexOf(':');
+      final String type = (colon < 0) ? name : name.substring(0, colon);
+      final String parameter = (colon < 0) ? null : name.substring(colon+1);
+      switch (type) {
+        case "fastdtw":
+          options.setFastDTWWindow();
+          break;
+        case "sakoe-chiba":
+        case "sakoechiba":
+          options.setSakoeChibaWindow((parameter == null) ? -1 : (int) parseNumber(parameter, "band radius", true));
+          break;
+        case "itakura":
+          options.setItakuraWindow((parameter == null) ? ItakuraParallelogramWindow.DEFAULT_MAX_SLOPE : parseNumber(parameter, "maximum slope", false));
+          break;
+        default:
+          throw new InternalError("ERROR:  Unknown window '" + window + "' (expected fastdtw, sakoe-chiba[:radius] or itakura[:slope])");
+      }
+    }
+    if (missing != null) {
+      final String name = missing.trim().toLowerCase();
+      final int colon = name.indexOf(':');
+      final String type = (colon < 0) ? name : name.substring(0, colon);
+      final String parameter = (colon < 0) ? null : name.substring(colon+1);
+      switch (type) {
+        case "strip":
+          options.setMissingPolicy(STRIP_MISSING);
+          break;
+        case "skip":
+          options.setMissingPolicy(SKIP_MISSING);
+          if (parameter != null) options.setMissingCost(parseNumber(parameter, "missing cost", false));
+          break;
+        case "interpolate":
+          options.setMissingPolicy(INTERPOLATE_MISSING);
+          break;
+        default:
+          throw new InternalError("ERROR:  Unknown missing policy '" + missing + "' (expected strip, skip[:cost] or interpolate)");
+      }
+    }
+    return options;
+  }
+
+  // Reads the value of one of the options for parse(), as a whole number (that fits in an int) or not.
+  private static double parseNumber(String value, String name, boolean isWholeNumber) {
+    try {
+      return isWholeNumber ? Integer.parseInt(value.trim()) : Double.parseDouble(value);
+    } catch (NumberFormatException e) { throw new InternalError("ERROR:  The " + name + " has to be a" + (isWholeNumber ? " whole" : "") + " number, not '" + value + "'"); }
+  }
+
+  public void setSearchRadius(int searchRadius) {
+    if (searchRadius < 0) throw new InternalError("ERROR:  The search radius can't be negative (" + searchRadius + ")");
+    this.searchRadius = searchRadius;
+    isAutoSearchRadius = false;
+  }
+
+  public void setAutoSearchRadius() { isAutoSearchRadius = true; }
+
+  public boolean isAutoSearchRadius() { return isAutoSearchRadius; }
+
+  public void setResolutionFactor(double resolutionFactor) {
+    if (!(resolutionFactor > 1.0)) throw new InternalError("ERROR:  The resolution factor has to be more than 1 (" + resolutionFactor + ")");
+    this.resolutionFactor = resolutionFactor;
+  }
+
+  public double getResolutionFactor() { return resolutionFactor; }
+
+  public int getWindowType() { return windowType; }
+
+  // The default: FastDTW's recursion with ExpandedResWindows.
+  public void setFastDTWWindow() { windowType = FASTDTW_WINDOW; }
+
+  // A negative bandRadius makes the band DEFAULT_BAND_FRACTION of the longer series wide.
+  public void setSakoeChibaWindow(int bandRadius) {
+    windowType = SAKOE_CHIBA_WINDOW;
+    this.bandRadius = bandRadius;
+  }
+
+  public void setItakuraWindow(double maxSlope) {
+    if (!(maxSlope > 1.0)) throw new InternalError("ERROR:  The maximum slope of an Itakura parallelogram has to be more than 1 (" + maxSlope + ")");
+    windowType = ITAKURA_WINDOW;
+    this.maxSlope = maxSlope;
+  }
+
+  // Returns the band to align a series of tsIsize frames with one of tsJsize frames in, or null if the FastDTW
+  // recursion should be used.
+  public SearchWindow createBandWindow(int tsIsize, int tsJsize) {
+    switch (windowType) {
+      case SAKOE_CHIBA_WINDOW:
+        final int radius = (bandRadius >= 0) ? bandRadius : (int)Math.ceil(DEFAULT_BAND_FRACTION*Math.max(tsIsize, tsJsize));
+        return new SakoeChibaWindow(tsIsize, tsJsize, radius);
+      case ITAKURA_WINDOW:
+        return new ItakuraParallelogramWindow(tsIsize, tsJsize, maxSlope);
+      default:
+        return null;
+    }
+  }
+
+  public int getMissingPolicy() { return missingPolicy; }
+
+  public void setMissingPolicy(int missingPolicy) {
+    if (missingPolicy < STRIP_MISSING || missingPolicy > INTERPOLATE_MISSING) throw new InternalError("ERROR:  Unknown missing policy " + missingPolicy);
+    this.missingPolicy = missingPolicy;
+  }
+
+  public double getMissingCost() { return missingCost; }
+
+  public void setMissingCost(double missingCost) {
+    if (missingCost < 0.0) throw new InternalError("ERROR:  The cost of a missing frame can't be negative (" + missingCost + ")");
+    this.missingCost = missingCost;
+  }
+
+  public long getParallelFillThreshold() { return parallelFillThreshold; }
+
+  // Long.MAX_VALUE always fills on one core, 0 always in parallel.
+  public void setParallelFillThreshold(long parallelFillThreshold) {
+    if (parallelFillThreshold < 0) throw new InternalError("ERROR:  The parallel fill threshold can't be negative (" + parallelFillThreshold + ")");
+    this.parallelFillThreshold = parallelFillThreshold;
+  }
+
+  public int getNumOfThreads() { return numOfThreads; }
+
+  // 1 aligns the segments of a body one after another.
+  public void setNumOfThreads(int numOfThreads) {
+    if (numOfThreads < 1) throw new InternalError("ERROR:  At least one thread is needed (" + numOfThreads + ")");
+    this.numOfThreads = numOfThreads;
+  }
+
+  public File getCheckpointDir() { return checkpointDir; }
+  public void setCheckpointDir(File checkpointDir) { this.checkpointDir = checkpointDir; }
+
+  // The distance function of every segment name, checked in order (see getSegmentDistFn()).
+  public Map<String, DistanceFunction> getSegmentDistFns() { return segmentDistFns; }
+  public void setSegmentDistFns(Map<String, DistanceFunction> segmentDistFns) { this.segmentDistFns = new LinkedHashMap<>(segmentDistFns); }
+
+  // Returns the distance function of the first segment name that is part of the angle file's name (the folder
+  // is ignored), or a EuclideanDistance if none of them are.
+  public DistanceFunction getSegmentDistFn(String angleFileName) {
+    String fileName = angleFileName.substring(Math.max(angleFileName.lastIndexOf('\\'), angleFileName.lastIndexOf('/')) + 1);
+    for (Map.Entry<String, DistanceFunction> segment:segmentDistFns.entrySet()) {
+      if (fileName.contains(segment.getKey())) return segment.getValue();
+    }
+    return new EuclideanDistance();
+  }
+
+  public ReferenceCache getStudentCache() { return studentCache; }
+  public void setStudentCache(ReferenceCache studentCache) { this.studentCache = studentCache; }
+
+  // Returns the distance function DTW uses to align tsI with tsJ: distFn itself, or distFn wrapped in a
+  // MissingValueDistance when missing frames are kept in the series as NaN. A point with nothing to compare then
+  // costs missingCost times the mean distance of the points of tsI and tsJ (see MissingValueDistance.meanDistance()).
+  public DistanceFunction getDistFn(DistanceFunction distFn, TimeSeries tsI, TimeSeries tsJ) {
+    if (missingPolicy == STRIP_MISSING) return distFn;
+    return new MissingValueDistance(distFn, missingCost*MissingValueDistance.meanDistance(distFn, tsI, tsJ));
+  }
+
+  // Same, for when only one of the series is known in full (a live student, see OnlineAligner, or a long series
+  // streamed into SubsequenceDTW): with nothing to take the mean of, a point with nothing to compare costs
+  // missingCost as it is. (OnlineAligner compares a missing frame with every teacher frame at that same cost, so it
+  // doesn't move the student either way.)
+  public DistanceFunction getDistFn(DistanceFunction distFn) {
+    if (missingPolicy == STRIP_MISSING) return distFn;
+    return new MissingValueDistance(distFn, missingCost);
+  }
+
+  // Returns the search radius to align a series of tsIsize frames with one of tsJsize frames.
+  public int getSearchRadius(int tsIsize, int tsJsize) {
+    if (!isAutoSearchRadius) return searchRadius;
+    final int maxSize = Math.max(tsIsize, tsJsize);
+    // a radius this big makes recursiveDTW() go straight to full DTW
+    if (maxSize <= AUTO_FULL_DTW_MAX_SIZE) return maxSize;
+    return Math.max(AUTO_MIN_SEARCH_RADIUS, Math.min(AUTO_MAX_SEARCH_RADIUS, maxSize/100));
+  }
+
+  public String toString() {
+    if (windowType == SAKOE_CHIBA_WINDOW) return "window=sakoe-chiba, band radius=" + ((bandRadius >= 0) ? String.valueOf(bandRadius) : "auto");
+    if (windowType == ITAKURA_WINDOW) return "window=itakura, max slope=" + maxSlope;
+    return "radius=" + (isAutoSearchRadius ? "auto" : String.valueOf(searchRadius)) + ", resolution=" + resolutionFactor;
+  }
+}
@@ -1 +1,15 @@
-public interface DistanceFunction { public double calcDistance(double[] vector1, double[] vector2); }
\ No newline at end of file
+public interface DistanceFunction {
+   public double calcDistance(double[] vector1, double[] vector2);
+
+   // Distance between two points that are stored inside flat measurement arrays (see TimeSeries): the first
+   // point is values1[offset1...offset1+length-1], the second one values2[offset2...offset2+length-1].
+   public double calcDistance(double[] values1, int offset1, double[] values2, int offset2, int length);
+
+   // Distance between two 1-dimensional points, DTW uses this for time series with a single dimension.
+   public double calcDistance(double value1, double value2);
+
+   // The distance two points would have with factor times as many dimensions, each as far apart as the ones that
+   // gave distance (MissingValueDistance uses this for the dimensions it leaves out). The default is right for
+   // distances that are the square root of a sum over the dimensions, like EuclideanDistance.
+   default double scaleDimensions(double distance, double factor) { return distance*Math.sqrt(factor); }
+}
\ No newline at end of file
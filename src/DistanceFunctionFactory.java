@@ -0,0 +1,36 @@
+public class DistanceFunctionFactory {
+   // Returns the distance function with the given name (case doesn't matter):
+   //    euclidean, manhattan, squaredeuclidean, circular[:period], weighted:w1,w2,...
+   // The class names (EuclideanDistance, ManhattanDistance, ...) are accepted as well.
+   public static DistanceFunction getDistFnByName(String distFnName) {
+      final String name = distFnName.trim().toLowerCase();
+      final int colon = name.indexOf(':');
+      final String type = (colon < 0) ? name : name.substring(0, colon);
+      final String parameter = (colon < 0) ? null : name.substring(colon+1);
+      try {
+         switch (type) {
+            case "euclidean":
+            case "euclideandistance":
+               return new EuclideanDistance();
+            case "manhattan":
+            case "manhattandistance":
+               return new ManhattanDistance();
+            case "squaredeuclidean":
+            case "squaredeuclideandistance":
+               return new SquaredEuclideanDistance();
+            case "circular":
+            case "circularangledistance":
+               if (parameter == null) return new CircularAngleDistance();
+               return new CircularAngleDistance(Double.parseDouble(parameter));
+            case "weighted":
+            case "weightedeuclideandistance":
+               if (parameter == null) break;
+               final String[] weightTokens = parameter.split(",");
+               final double[] weights = new double[weightTokens.length];
+               for (int x=0; x < weights.length; x++) weights[x] = Double.parseDouble(weightTokens[x]);
+               return new WeightedEuclideanDistance(weights);
+         }
+      } catch (NumberFormatException e) { throw new InternalError("ERROR:  '" + distFnName + "' has an invalid number in it."); }
+      throw new InternalError("ERROR:  There is no distance function called '" + distFnName + "'.");
+   }
+}
\ No newline at end of file
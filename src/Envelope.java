@@ -0,0 +1,81 @@
+import java.util.Arrays;
+
+// The envelope of a 1-dimensional time series tsJ as seen from the points of another series tsI: for point i of
+// tsI, the smallest (lower) and largest (upper) value of tsJ among the cells (i, j) a search window allows.
+// Without a window every point of tsJ is allowed, so the envelope is tsJ's minimum and maximum everywhere.
+// A missing (NaN) value of tsJ could cost anything down to 0, so it opens the envelope to -/+Infinity.
+// LowerBound.keogh() measures how far tsI sticks out of it.
+public class Envelope {
+  private final double[] lower;
+  private final double[] upper;
+
+  // @param : the series the envelope is built over
+  // @param : number of points of the other series (tsI)
+  // @param : the cells DTW may use, or null for all of them
+  public Envelope(TimeSeries tsJ, int tsIsize, SearchWindow window) {
+    if (tsJ.numOfDimensions() != 1) throw new InternalError("ERROR:  An envelope can only be built over a 1-dimensional time series");
+    final double[] values = tsJ.measurementArray();
+    lower = new double[tsIsize];
+    upper = new double[tsIsize];
+    if (window == null) {
+      double min = Double.POSITIVE_INFINITY;
+      double max = Double.NEGATIVE_INFINITY;
+      for (int j = 0; j < tsJ.size(); j++) {
+        min = Math.min(min, lowValue(values[j]));
+        max = Math.max(max, highValue(values[j]));
+      }
+      Arrays.fill(lower, min);
+      Arrays.fill(upper, max);
+    } else if (isMonotone(window)) fillSliding(values, window);
+    else {
+      for (int i = 0; i < tsIsize; i++) {
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (int j = window.minJforI(i); j <= window.maxJforI(i); j++) {
+          min = Math.min(min, lowValue(values[j]));
+          max = Math.max(max, highValue(values[j]));
+        }
+        lower[i] = min;
+        upper[i] = max;
+      }
+    }
+  }
+
+  public int size() { return lower.length; }
+  public double getLower(int i) { return lower[i]; }
+  public double getUpper(int i) { return upper[i]; }
+
+  // Sliding minimum and maximum with monotonic deques (Lemire): every j goes into each deque once, so building
+  // the envelope is linear in the length of the two series however wide the window is.
+  private void fillSliding(double[] values, SearchWindow window) {
+    final int[] minDeque = new int[values.length];
+    final int[] maxDeque = new int[values.length];
+    int minHead = 0, minTail = 0, maxHead = 0, maxTail = 0;
+    int nextJ = 0;
+    for (int i = 0; i < lower.length; i++) {
+      final int maxJforI = window.maxJforI(i);
+      for (; nextJ <= maxJforI; nextJ++) {
+        while (minTail > minHead && lowValue(values[minDeque[minTail-1]]) >= lowValue(values[nextJ])) minTail--;
+        minDeque[minTail++] = nextJ;
+        while (maxTail > maxHead && highValue(values[maxDeque[maxTail-1]]) <= highValue(values[nextJ])) maxTail--;
+        maxDeque[maxTail++] = nextJ;
+      }
+      final int minJforI = window.minJforI(i);
+      while (minDeque[minHead] < minJforI) minHead++;
+      while (maxDeque[maxHead] < minJforI) maxHead++;
+      lower[i] = lowValue(values[minDeque[minHead]]);
+      upper[i] = highValue(values[maxDeque[maxHead]]);
+    }
+  }
+
+  // True if both ends of the window's columns never move down, which the sliding deques need.
+  private static boolean isMonotone(SearchWindow window) {
+    for (int i = window.minI()+1; i <= window.maxI(); i++) {
+      if (window.minJforI(i) < window.minJforI(i-1) || window.maxJforI(i) < window.maxJforI(i-1)) return false;
+    }
+    return true;
+  }
+
+  private static double lowValue(double value) { return Double.isNaN(value) ? Double.NEGATIVE_INFINITY : value; }
+  private static double highValue(double value) { return Double.isNaN(value) ? Double.POSITIVE_INFINITY : value; }
+}
@@ -2,9 +2,15 @@ public class EuclideanDistance implements DistanceFunction {
    public EuclideanDistance() {}
    public double calcDistance(double[] vector1, double[] vector2) {
       if (vector1.length != vector2.length) throw new InternalError("ERROR:  cannot calculate the distance between vectors of different sizes.");
+      return calcDistance(vector1, 0, vector2, 0, vector1.length);
+   }
+   public double calcDistance(double[] values1, int offset1, double[] values2, int offset2, int length) {
       double sqSum = 0.0;
-      for (int x=0; x < vector1.length; x++)
-          sqSum += Math.pow(vector1[x]-vector2[x], 2.0);
+      for (int x=0; x < length; x++) {
+          final double diff = values1[offset1+x]-values2[offset2+x];
+          sqSum += diff*diff;
+      }
       return Math.sqrt(sqSum);
    }
+   public double calcDistance(double value1, double value2) { return Math.abs(value1-value2); }
 }
\ No newline at end of file
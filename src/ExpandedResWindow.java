@@ -12,9 +12,8 @@ public class ExpandedResWindow extends SearchWindow {
 
     // For each part of the low-resolution warp path, project that path to the higher resolution by filling in the path's corresponding cells at the higher resolution.
     for (int w=0; w<shrunkWarpPath.size(); w++) {
-      final ColMajorCell currentCell = shrunkWarpPath.get(w);
-      final int warpedI = currentCell.getCol();
-      final int warpedJ = currentCell.getRow();
+      final int warpedI = shrunkWarpPath.getI(w);
+      final int warpedJ = shrunkWarpPath.getJ(w);
 
       final int blockISize = shrunkI.aggregatePointSize(warpedI);
       final int blockJSize = shrunkJ.aggregatePointSize(warpedJ);
@@ -0,0 +1,22 @@
+// The parallelogram of cells a warp path can reach from (0,0), and still get to (maxI,maxJ) from, when its slope
+// (in the scaled coordinates i/maxI, j/maxJ) stays between 1/maxSlope and maxSlope (Itakura). It is narrow at both
+// ends and widest in the middle, so the start and end of the two clips are held together while the middle may
+// drift. Like SakoeChibaWindow it doesn't need the PAA recursion.
+public class ItakuraParallelogramWindow extends SearchWindow {
+  public static final double DEFAULT_MAX_SLOPE = 2.0;
+
+  public ItakuraParallelogramWindow(TimeSeries tsI, TimeSeries tsJ, double maxSlope) { this(tsI.size(), tsJ.size(), maxSlope); }
+
+  public ItakuraParallelogramWindow(int tsIsize, int tsJsize, double maxSlope) {
+    super(tsIsize, tsJsize);
+    if (!(maxSlope > 1.0)) throw new InternalError("ERROR:  The maximum slope of an Itakura parallelogram has to be more than 1 (" + maxSlope + ")");
+    for (int i = minI(); i <= maxI(); i++) {
+      final double x = (maxI() == 0) ? 1.0 : (double)i/maxI();
+      final double lowerY = Math.max(x/maxSlope, 1.0-maxSlope*(1.0-x));
+      final double upperY = Math.min(x*maxSlope, 1.0-(1.0-x)/maxSlope);
+      // rounding can leave a column (nearly) empty, so the diagonal is always part of the window
+      markVisited(i, Math.max(minJ(), Math.min(diagonalMinJforI(i), (int)Math.ceil(lowerY*maxJ()-1e-9))));
+      markVisited(i, Math.min(maxJ(), Math.max(diagonalMaxJforI(i), (int)Math.floor(upperY*maxJ()+1e-9))));
+    }
+  }
+}
@@ -0,0 +1,60 @@
+// Cheap lower bounds of the warp distance DTW finds between two series, so a nearest-reference search can rule
+// a candidate out without aligning it (see NearestReferenceSearch).
+// LB_Kim: every warp path starts at (0,0) and ends at (maxI,maxJ), so those two cells alone are a lower bound.
+// LB_Keogh: every point of tsI is matched with at least one point of tsJ inside the window, so the distance from
+// each point of tsI to the envelope of tsJ (see Envelope) adds up to a lower bound. The window is the
+// Sakoe-Chiba or Itakura band of the options; FastDTW can end up anywhere, so there the envelope is all of tsJ
+// (FastDTW never finds less than full DTW).
+// LB_Keogh only holds for 1-dimensional series and for distances that grow with |x-y| (not for
+// CircularAngleDistance, where 350 is closer to 0 than 300 is); otherwise keogh() falls back to kim().
+public class LowerBound {
+  private LowerBound() {}
+
+  // LB_Kim. options decides how missing values are handled, like DTW does (see DTWOptions.getDistFn()).
+  public static double kim(TimeSeries tsI, TimeSeries tsJ, DTWOptions options, DistanceFunction distFn) {
+    if (tsI.numOfDimensions() != tsJ.numOfDimensions()) throw new InternalError("ERROR:  cannot calculate the distance between vectors of different sizes.");
+    if (tsI.size() == 0 || tsJ.size() == 0) return 0.0;
+    distFn = options.getDistFn(distFn, tsI, tsJ);
+    final double first = distance(distFn, tsI, 0, tsJ, 0);
+    // a path of one cell has its first cell as its last one
+    if (tsI.size() == 1 && tsJ.size() == 1) return first;
+    return first + distance(distFn, tsI, tsI.size()-1, tsJ, tsJ.size()-1);
+  }
+
+  // The larger of LB_Keogh and LB_Kim (LB_Kim alone if LB_Keogh doesn't hold for these series, see above).
+  public static double keogh(TimeSeries tsI, TimeSeries tsJ, DTWOptions options, DistanceFunction distFn) {
+    final double kim = kim(tsI, tsJ, options, distFn);
+    if (!isKeoghValid(tsI, distFn) || tsI.size() == 0 || tsJ.size() == 0) return kim;
+    return Math.max(kim, keogh(tsI, createEnvelope(tsJ, tsI.size(), options), distFn));
+  }
+
+  // LB_Keogh of tsI against an envelope built for it. Missing points of tsI add nothing.
+  public static double keogh(TimeSeries tsI, Envelope envelope, DistanceFunction distFn) {
+    if (envelope.size() != tsI.size()) throw new InternalError("ERROR:  The envelope was built for " + envelope.size() + " points, not " + tsI.size());
+    final double[] values = tsI.measurementArray();
+    double bound = 0.0;
+    for (int i = 0; i < tsI.size(); i++) {
+      final double value = values[i];
+      if (value > envelope.getUpper(i)) bound += distFn.calcDistance(value, envelope.getUpper(i));
+      else if (value < envelope.getLower(i)) bound += distFn.calcDistance(value, envelope.getLower(i));
+    }
+    return bound;
+  }
+
+  // The envelope of tsJ for a tsI of tsIsize points, over the window DTW will use with options.
+  public static Envelope createEnvelope(TimeSeries tsJ, int tsIsize, DTWOptions options) {
+    return new Envelope(tsJ, tsIsize, options.createBandWindow(tsIsize, tsJ.size()));
+  }
+
+  // True if LB_Keogh is a lower bound for distFn on series like tsI.
+  public static boolean isKeoghValid(TimeSeries tsI, DistanceFunction distFn) {
+    return tsI.numOfDimensions() == 1 && (distFn instanceof EuclideanDistance || distFn instanceof ManhattanDistance
+        || distFn instanceof SquaredEuclideanDistance || distFn instanceof WeightedEuclideanDistance);
+  }
+
+  private static double distance(DistanceFunction distFn, TimeSeries tsI, int i, TimeSeries tsJ, int j) {
+    final int numOfDimensions = tsI.numOfDimensions();
+    if (numOfDimensions == 1) return distFn.calcDistance(tsI.measurementArray()[i], tsJ.measurementArray()[j]);
+    return distFn.calcDistance(tsI.measurementArray(), i*numOfDimensions, tsJ.measurementArray(), j*numOfDimensions, numOfDimensions);
+  }
+}
@@ -1,16 +1,71 @@
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.File;
+import java.nio.file.NotDirectoryException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.json.JSONException;
-import org.json.simple.*;
-import org.json.simple.parser.JSONParser;
-import org.json.simple.parser.ParseException;
 import java.util.Scanner;
 
 public class Main {
   public static void main(String[] args) throws Exception {
+    // --convert FOLDER writes the angle files of FOLDER into FOLDER.angles, which can be given instead of the folder
+    if (hasFlag(args, "--convert")) {
+      for (String folderName:getFlagValues(args, "--convert")) System.out.println("Wrote " + AngleSeriesFile.convert(folderName));
+      return;
+    }
+    final boolean isWholeBody = hasFlag(args, "--whole-body");
+    // every flag is read before anything is aligned, so a bad value is an ERROR line instead of a stack trace
+    final DTWOptions options;
+    final int bandRadius;
+    final int numOfMatches;
+    try {
+      options = parseDTWOptions(args);
+      parseCacheBudget(args);
+      bandRadius = getIntFlagValue(args, "--band", -1);
+      numOfMatches = getIntFlagValue(args, "--top", 1);
+      if (numOfMatches < 1) throw new InternalError("ERROR:  --top needs at least 1 match (" + numOfMatches + ")");
+    } catch (NumberFormatException e) {
+      System.out.println("ERROR: " + e.getMessage());
+      return;
+    } catch (InternalError e) {
+      System.out.println(e.getMessage());
+      return;
+    }
+    // --live TEACHER [--band R] aligns student frames as they come in on standard input (see liveDTW())
+    if (hasFlag(args, "--live")) {
+      liveDTW(createVidNamesArrayList(getFlagValue(args, "--live")), bandRadius, options.getSegmentDistFn(""), options);
+      return;
+    }
+    // --locate MOVE ROUTINE [--top K] finds where the move (e.g. a teacher's pirouette) is done in the routine
+    if (hasFlag(args, "--locate")) {
+      final int locateIndex = Arrays.asList(args).indexOf("--locate");
+      if (locateIndex + 2 >= args.length) throw new InternalError("ERROR:  --locate needs the folder of the move and the folder of the routine");
+      for (SubsequenceMatch match:locateMove(createVidNamesArrayList(args[locateIndex + 1]), createVidNamesArrayList(args[locateIndex + 2]), numOfMatches, options.getSegmentDistFn(""), options))
+        System.out.println("Frames " + match.getStart() + " to " + match.getEnd() + " (warp distance " + match.getDistance() + ")");
+      return;
+    }
+    // --nearest MANIFEST finds the closest teacher of every student of the manifest (see NearestReferenceSearch)
+    if (hasFlag(args, "--nearest")) {
+      final BatchComparison batch = BatchComparison.readManifest(getFlagValue(args, "--nearest"));
+      final NearestReferenceSearch search = new NearestReferenceSearch(batch.getTeacherFolders(), options);
+      for (String studentFolder:batch.getStudentFolders()) System.out.println(search.search(studentFolder));
+      System.out.println(search);
+      return;
+    }
+    // --batch MANIFEST aligns every student of the manifest with every teacher (see BatchComparison)
+    if (hasFlag(args, "--batch")) {
+      // --out DIR is where the alignments and summary.csv go (batch by default)
+      final String outputDirName = getFlagValue(args, "--out");
+      final File outputDir = new File((outputDirName == null) ? "batch" : outputDirName);
+      for (ComparisonResult result:BatchComparison.readManifest(getFlagValue(args, "--batch")).run(outputDir, options)) System.out.println(result);
+      System.out.println("Wrote " + new File(outputDir, BatchComparison.SUMMARY_FILE_NAME));
+      return;
+    }
     System.out.println("Hi Emily!");
     Scanner in = new Scanner(System.in);
     System.out.println("Please enter the folder location of your OpenPose files for the first video. Remember to use always two backslashes, not one.");
@@ -35,88 +90,393 @@ public class Main {
       ArrayList<String> vidNames = createVidNamesArrayList(f1);
       ArrayList<String> vidNames2 = createVidNamesArrayList(f2);
       // autoswitch the files for emily if she inputs them in the wrong order
+      // (--batch and --nearest don't: there the manifest says which video is graded, so such a pair is left out)
       if (vidNames.size() > vidNames2.size()) {
-        bodyDTW(vidNames2, vidNames, outputFileName);
-      } else { bodyDTW(vidNames, vidNames2, outputFileName); }
+        ArrayList<String> swap = vidNames;
+        vidNames = vidNames2;
+        vidNames2 = swap;
+      }
+      if (isWholeBody) wholeBodyDTW(vidNames, vidNames2, outputFileName, options.getSegmentDistFn(""), options);
+      else bodyDTW(vidNames, vidNames2, outputFileName, options);
 
       System.out.println("Congratulations, your output file has been completed. Just open the FrameMatcher folder and open the file named " + outputFileName + " to see your frame matches.");
       System.out.println("Remember, matches are organized by index. That means index x of the first frame sequence correlates to index x of the second frame sequence, where each frame sequence represents one of your input videos.");
     } catch(FileNotFoundException e) { System.out.println("One of your folders was not found. Remember, your file location must have two backslashes. For example, C:\\Example\\example vids\\video files");
-    } catch(NullPointerException e) { System.out.println("This folder location does not denote a directory. Note that this program does not work for individual files — if you want align single files, please place them in emtpy folders and try again.");
+    } catch(NotDirectoryException | NullPointerException e) { System.out.println("This folder location does not denote a directory. Note that this program does not work for individual files — if you want align single files, please place them in emtpy folders and try again.");
     } catch(Exception e) { System.out.println("Your input folder(s) either contain non-JSON or your JSON files are empty. Please check them and try again."); }
   }
   
-  public static AngleMap angleDTW(String tsIAngleFileName, String tsJAngleFileName, int i, HashMap<Integer, ArrayList<Integer>> tsIZeroHashMap, HashMap<Integer, ArrayList<Integer>> tsJZeroHashMap) throws Exception {
-    double[] tsIframes = jsonParser(tsIAngleFileName);
-    double[] tsJframes = jsonParser(tsJAngleFileName);
-    tsIframes = buildZeroHashMap(tsIframes, i, tsIZeroHashMap);
-    tsJframes = buildZeroHashMap(tsJframes, i, tsJZeroHashMap);
-    Body.numOfStudentFrames = tsIframes.length;
-    Body.numOfTeacherFrames = tsJframes.length;
-    TimeWarpInfo s = preWarping(tsIframes, tsJframes);
-    AngleMap aMap = s.getPath().createAngleMap("aMap.ser", tsIZeroHashMap, tsJZeroHashMap, i);
+  // Reads --threads N from the command line. Without it every available core is used; --threads 1 keeps the
+  // original one-segment-after-another behaviour.
+  public static int parseNumOfThreads(String[] args) {
+    return Math.max(1, getIntFlagValue(args, "--threads", Runtime.getRuntime().availableProcessors()));
+  }
+
+  // Reads --checkpoint DIR from the command line. When it is given, the AngleMap of every segment is also
+  // saved to DIR (see AngleMap.save()); otherwise nothing but the output file is written.
+  public static File parseCheckpointDir(String[] args) {
+    String checkpointDir = getFlagValue(args, "--checkpoint");
+    if (checkpointDir == null) return null;
+    return new File(checkpointDir);
+  }
+
+  // Reads --cache-mb N from the command line and gives the teacher cache (see ReferenceCache) N megabytes.
+  // Without it the cache gets 256 MB; --cache-mb 0 turns it off.
+  public static void parseCacheBudget(String[] args) {
+    if (getFlagValue(args, "--cache-mb") == null) return;
+    final long cacheBudget = getLongFlagValue(args, "--cache-mb", 0);
+    if (cacheBudget < 0 || cacheBudget > Long.MAX_VALUE >> 20) throw new InternalError("ERROR:  --cache-mb has to be between 0 and " + (Long.MAX_VALUE >> 20) + " (" + cacheBudget + ")");
+    ReferenceCache.shared().setMemoryBudget(cacheBudget << 20);
+  }
+
+  // Reads --radius N|auto, --resolution F, --window fastdtw|sakoe-chiba[:R]|itakura[:S] and
+  // --missing strip|skip[:C]|interpolate from the command line. Without them the search radius is 500 and the
+  // resolution factor 2.0; --radius auto picks the radius from the length of each pair of series (see
+  // DTWOptions.getSearchRadius()). A sakoe-chiba or itakura window aligns in a fixed band around the diagonal
+  // instead of using the FastDTW recursion. --missing skip or interpolate keeps the zero frames in the series
+  // instead of removing them (see markMissingFrames()). --parallel-cells N fills cost matrices of N cells or more on
+  // several cores (4194304 without it). --threads, --checkpoint and --metric are read too (see parseNumOfThreads(),
+  // parseCheckpointDir() and parseSegmentDistFns()).
+  public static DTWOptions parseDTWOptions(String[] args) {
+    DTWOptions options = DTWOptions.parse(getFlagValue(args, "--radius"), getFlagValue(args, "--resolution"), getFlagValue(args, "--window"), getFlagValue(args, "--missing"));
+    options.setParallelFillThreshold(getLongFlagValue(args, "--parallel-cells", DTWOptions.DEFAULT_PARALLEL_FILL_THRESHOLD));
+    options.setNumOfThreads(parseNumOfThreads(args));
+    options.setCheckpointDir(parseCheckpointDir(args));
+    options.setSegmentDistFns(parseSegmentDistFns(args));
+    return options;
+  }
+
+  // Reads every --metric NAME / --metric SEGMENT=NAME from the command line (see
+  // DistanceFunctionFactory.getDistFnByName() for the names). --metric NAME sets the metric of every segment
+  // that has no SEGMENT=NAME of its own, e.g. --metric circular --metric torso=euclidean
+  public static LinkedHashMap<String, DistanceFunction> parseSegmentDistFns(String[] args) {
+    LinkedHashMap<String, DistanceFunction> segmentDistFns = new LinkedHashMap<>();
+    DistanceFunction defaultDistFn = null;
+    for (String metric:getFlagValues(args, "--metric")) {
+      int equals = metric.indexOf('=');
+      if (equals < 0) defaultDistFn = DistanceFunctionFactory.getDistFnByName(metric);
+      else segmentDistFns.put(metric.substring(0, equals), DistanceFunctionFactory.getDistFnByName(metric.substring(equals + 1)));
+    }
+    // "" is part of every file name, so the default has to be checked last
+    if (defaultDistFn != null) segmentDistFns.put("", defaultDistFn);
+    return segmentDistFns;
+  }
+
+  // Returns true if flagName is on the command line.
+  private static boolean hasFlag(String[] args, String flagName) { return Arrays.asList(args).contains(flagName); }
+
+  // Returns the value that follows flagName on the command line, or null if the flag isn't there.
+  private static String getFlagValue(String[] args, String flagName) {
+    for (int a = 0; a < args.length - 1; a++) {
+      if (args[a].equals(flagName)) return args[a + 1];
+    }
+    return null;
+  }
+
+  // Returns the whole number that follows flagName on the command line, or defaultValue if the flag isn't there.
+  // A value that isn't a number is a NumberFormatException that names the flag.
+  private static int getIntFlagValue(String[] args, String flagName, int defaultValue) {
+    final long value = getLongFlagValue(args, flagName, defaultValue);
+    if (value != (int) value) throw new NumberFormatException(flagName + " needs a smaller number than " + value);
+    return (int) value;
+  }
+
+  private static long getLongFlagValue(String[] args, String flagName, long defaultValue) {
+    final String value = getFlagValue(args, flagName);
+    if (value == null) return defaultValue;
+    try {
+      return Long.parseLong(value.trim());
+    } catch (NumberFormatException e) { throw new NumberFormatException(flagName + " needs a whole number, not '" + value + "'"); }
+  }
+
+  // Returns the values that follow every occurrence of flagName on the command line.
+  private static ArrayList<String> getFlagValues(String[] args, String flagName) {
+    ArrayList<String> values = new ArrayList<>();
+    for (int a = 0; a < args.length - 1; a++) {
+      if (args[a].equals(flagName)) values.add(args[++a]);
+    }
+    return values;
+  }
+
+  // Aligns one segment. The student and teacher frame counts (the removed zeroes included, since the AngleMap has
+  // the original frame numbers) are written into numOfFrames for Body. The student segment comes out of the
+  // options' student cache when it has one (see BatchComparison, which aligns every student against many teachers).
+  public static AngleMap angleDTW(String tsIAngleFileName, String tsJAngleFileName, int i, Map<Integer, ArrayList<Integer>> tsIZeroHashMap, Map<Integer, ArrayList<Integer>> tsJZeroHashMap, int[] numOfFrames, DistanceFunction distFn, DTWOptions options) throws Exception {
+    final ReferenceCache studentCache = options.getStudentCache();
+    final SegmentSeries student = (studentCache == null) ? SegmentSeries.load(tsIAngleFileName, options) : studentCache.get(tsIAngleFileName, options);
+    // the teacher is aligned against again and again, so it comes out of the cache with its PAA pyramid
+    final SegmentSeries teacher = ReferenceCache.shared().get(tsJAngleFileName, options);
+    tsIZeroHashMap.put(i, student.getZeroIndexes());
+    tsJZeroHashMap.put(i, teacher.getZeroIndexes());
+    numOfFrames[0] = student.getNumOfOriginalFrames();
+    numOfFrames[1] = teacher.getNumOfOriginalFrames();
+    TimeWarpInfo s = DTW.getWarpInfoBetween(student.getSeries(), teacher.getPyramid(), options, distFn);
+    AngleMap aMap;
+    if (student.getOriginalFrames() == null) aMap = s.getPath().createAngleMap(s.getPathCosts());
+    else aMap = s.getPath().createAngleMap(s.getPathCosts(), student.getOriginalFrames(), teacher.getOriginalFrames());
+    aMap.setWarpDistance(s.getDistance());
     return aMap;
   }
   
-  public static double[] buildZeroHashMap(double[] frames, int i, HashMap<Integer, ArrayList<Integer>> zeroHashMap) {
+  public static double[] buildZeroHashMap(double[] frames, int i, Map<Integer, ArrayList<Integer>> zeroHashMap) {
+    return buildZeroHashMap(frames, i, zeroHashMap, new int[frames.length]);
+  }
+
+  // Removes the zero frames (OpenPose dropouts) and puts their indexes in the zero hash map under key i.
+  // originalFrames (at least as long as frames) gets the original frame number of every frame that is kept, which
+  // is what AngleMap.addZeroes() needs to map the alignment back to the original frame numbers.
+  public static double[] buildZeroHashMap(double[] frames, int i, Map<Integer, ArrayList<Integer>> zeroHashMap, int[] originalFrames) {
     ArrayList<Integer> zeroIndexes = new ArrayList<>();   
-    ArrayList<Double> newFrames = new ArrayList<>();
+    double[] frameArray = new double[frames.length];
+    int numOfFrames = 0;
     for (int a = 0; a < frames.length; a++) {
         if (frames[a] == 0)
             zeroIndexes.add(a);
-        else newFrames.add(frames[a]);
+        else {
+            originalFrames[numOfFrames] = a;
+            frameArray[numOfFrames++] = frames[a];
+        }
     }
-    double[] frameArray = new double[newFrames.size()];
-    for (int a = 0; a < newFrames.size(); a++)
-        frameArray[a] = newFrames.get(a);
-    frames = frameArray;
     zeroHashMap.put(i, zeroIndexes);
-    return frames;
+    return Arrays.copyOf(frameArray, numOfFrames);
   }
   
-  public static double[] jsonParser(String angleFileName) throws FileNotFoundException, IOException, ParseException {
-    JSONParser parser = new JSONParser();
-    Object obj = parser.parse(new FileReader(angleFileName));
-    JSONObject jsonObject = (JSONObject)obj;
-    JSONArray angles = (JSONArray)jsonObject.get("final_vid_angles");
-    double[] frames = new double[angles.size()];
-    for (int j = 0; j < frames.length; j++) frames[j] = Double.valueOf(angles.get(j).toString());    
+  // Turns the zero frames (OpenPose dropouts) into missing (NaN) values in place, for the skip and interpolate
+  // missing policies. With interpolate they are filled in from their neighbours right away (see
+  // interpolateMissingFrames()); with skip DTW warps past them (see MissingValueDistance).
+  public static double[] markMissingFrames(double[] frames, DTWOptions options) {
+    for (int a = 0; a < frames.length; a++) {
+      if (frames[a] == 0) frames[a] = Double.NaN;
+    }
+    if (options.getMissingPolicy() == DTWOptions.INTERPOLATE_MISSING) interpolateMissingFrames(frames);
     return frames;
   }
+
+  // Fills every run of missing (NaN) frames in with a straight line between the frames on either side of it. A run
+  // at the start or the end gets the value of its one neighbour; if every frame is missing nothing changes.
+  public static void interpolateMissingFrames(double[] frames) {
+    int lastPresent = -1;
+    for (int a = 0; a <= frames.length; a++) {
+      if (a < frames.length && Double.isNaN(frames[a])) continue;
+      if (a - lastPresent > 1 && (lastPresent >= 0 || a < frames.length)) {
+        for (int m = lastPresent + 1; m < a; m++) {
+          if (lastPresent < 0) frames[m] = frames[a];
+          else if (a == frames.length) frames[m] = frames[lastPresent];
+          else frames[m] = frames[lastPresent] + (frames[a] - frames[lastPresent]) * (m - lastPresent) / (a - lastPresent);
+        }
+      }
+      lastPresent = a;
+    }
+  }
+
+  // Reads the final_vid_angles of an angle file (see AngleFileReader), or the angles of a segment of a .angles
+  // container (see AngleSeriesFile).
+  public static double[] jsonParser(String angleFileName) throws FileNotFoundException, IOException {
+    if (AngleSeriesFile.isSegmentReference(angleFileName)) return AngleSeriesFile.readSegment(angleFileName);
+    return AngleFileReader.read(angleFileName);
+  }
   
-  public static void bodyDTW(ArrayList<String> video1, ArrayList<String> video2, String fileName) throws JSONException, Exception {
-    int studentVidSize = video1.size();
+  // With more than one thread in the options the segments are aligned concurrently on a pool of at most that many
+  // threads. The AngleMaps are collected by segment index, so Body sees them in the same order (and produces the
+  // same output) as when they are aligned one after another.
+  // If the options have a checkpoint folder, every segment's AngleMap is also saved there as aMap<segment>.amap.
+  // Each segment is aligned with the distance function DTWOptions.getSegmentDistFn() picks for the student's angle
+  // file, and the student segments come out of the options' student cache when it has one (see angleDTW()).
+  public static BodyAlignment bodyDTW(ArrayList<String> video1, ArrayList<String> video2, String fileName, DTWOptions options) throws JSONException, Exception {
+    final int numOfThreads = options.getNumOfThreads();
+    final File checkpointDir = options.getCheckpointDir();
+    final int studentVidSize = video1.size();
+    final int[][] numOfFrames = new int[studentVidSize][2];
+    final Map<Integer, ArrayList<Integer>> tsIZeroHashMap = new ConcurrentHashMap<>();
+    final Map<Integer, ArrayList<Integer>> tsJZeroHashMap = new ConcurrentHashMap<>();
     ArrayList<AngleMap> bodyList = new ArrayList<>();
-    ArrayList<String> fileNameList = new ArrayList<>();  
+    if (numOfThreads <= 1 || studentVidSize <= 1) {
+      for (int i = 0; i < studentVidSize; i++)
+        bodyList.add(angleDTW(video1.get(i), video2.get(i), i, tsIZeroHashMap, tsJZeroHashMap, numOfFrames[i], options.getSegmentDistFn(video1.get(i)), options));
+    } else {
+      final ExecutorService pool = Executors.newFixedThreadPool(Math.min(numOfThreads, studentVidSize));
+      try {
+        ArrayList<Future<AngleMap>> segments = new ArrayList<>();
+        for (int i = 0; i < studentVidSize; i++) {
+          final int segment = i;
+          segments.add(pool.submit(() -> angleDTW(video1.get(segment), video2.get(segment), segment, tsIZeroHashMap, tsJZeroHashMap, numOfFrames[segment], options.getSegmentDistFn(video1.get(segment)), options)));
+        }
+        for (Future<AngleMap> segment:segments) bodyList.add(segment.get());
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof Exception) throw (Exception) e.getCause();
+        throw e;
+      } finally { pool.shutdownNow(); }
+    }
+    if (checkpointDir != null) {
+      checkpointDir.mkdirs();
+      for (int i = 0; i < bodyList.size(); i++) bodyList.get(i).save(new File(checkpointDir, "aMap" + i + ".amap"));
+    }
+    // Body gets a frame for every student frame any segment has.
+    int numOfStudentFrames = 0;
+    int numOfTeacherFrames = 0;
+    for (int[] n:numOfFrames) {
+      numOfStudentFrames = Math.max(numOfStudentFrames, n[0]);
+      numOfTeacherFrames = Math.max(numOfTeacherFrames, n[1]);
+    }
+    Body body = new Body(bodyList, numOfStudentFrames, numOfTeacherFrames);
+    BodyAlignment alignment = body.getAlignment();
+    ExternalFile.createJSON(alignment, fileName);
+    return alignment;
+  }
+  
+  // The warp distance bodyDTW() would give the pair (see BodyAlignment.getWarpDistance()), without the warp paths,
+  // Body or the output file, for ranking. Returns +Infinity as soon as the segments so far add up to more than
+  // upperBound (e.g. the best distance found so far); each segment is only aligned as far as the bound that is
+  // left allows (see DTW.getWarpDistBetween()). The student segments come out of the options' student cache when it
+  // has one.
+  public static double bodyWarpDistance(ArrayList<String> video1, ArrayList<String> video2, DTWOptions options, double upperBound) throws Exception {
+    final ReferenceCache studentCache = options.getStudentCache();
+    double warpDistance = 0.0;
+    for (int i = 0; i < video1.size(); i++) {
+      final SegmentSeries student = (studentCache == null) ? SegmentSeries.load(video1.get(i), options) : studentCache.get(video1.get(i), options);
+      final SegmentSeries teacher = ReferenceCache.shared().get(video2.get(i), options);
+      warpDistance += DTW.getWarpDistBetween(student.getSeries(), teacher.getPyramid(), options, options.getSegmentDistFn(video1.get(i)), upperBound - warpDistance);
+      if (warpDistance > upperBound) return Double.POSITIVE_INFINITY;
+    }
+    return warpDistance;
+  }
+
+  // Aligns all segments at once instead of one by one (--whole-body). Segment k of both videos becomes dimension
+  // k of one multi-dimensional time series per video, and a single DTW over those gives one warp path for the
+  // whole body. That path goes through Body as the only AngleMap, so the mode/median/mean reconciliation has
+  // nothing to reconcile.
+  // A frame where any of the segments is 0 (an OpenPose dropout) is removed from the whole series, unless the
+  // missing policy keeps it (then only that segment's dimension is missing).
+  // Use a WeightedEuclideanDistance as distFn to let some segments count more than others. If the options have a
+  // checkpoint folder, the AngleMap is also saved there as aMapWholeBody.amap.
+  public static BodyAlignment wholeBodyDTW(ArrayList<String> video1, ArrayList<String> video2, String fileName, DistanceFunction distFn, DTWOptions options) throws JSONException, Exception {
+    final int numOfSegments = video1.size();
+    final File checkpointDir = options.getCheckpointDir();
     HashMap<Integer, ArrayList<Integer>> tsIZeroHashMap = new HashMap<>();
     HashMap<Integer, ArrayList<Integer>> tsJZeroHashMap = new HashMap<>();
-    for (int i = 0; i < studentVidSize; i++) {
-        AngleMap aMap = angleDTW(video1.get(i), video2.get(i), i, tsIZeroHashMap, tsJZeroHashMap);
-        bodyList.add(aMap);
-        fileNameList.add("aMap.ser");
+    TimeSeries tsI = loadWholeBody(video1, numOfSegments, tsIZeroHashMap, options);
+    TimeSeries tsJ = loadWholeBody(video2, numOfSegments, tsJZeroHashMap, options);
+    TimeWarpInfo s = preWarping(tsI, tsJ, distFn, options);
+    AngleMap aMap;
+    if (options.getMissingPolicy() == DTWOptions.STRIP_MISSING) aMap = s.getPath().createAngleMap(s.getPathCosts(), tsIZeroHashMap, tsJZeroHashMap, 0);
+    else aMap = s.getPath().createAngleMap(s.getPathCosts());
+    aMap.setWarpDistance(s.getDistance());
+    if (checkpointDir != null) {
+      checkpointDir.mkdirs();
+      aMap.save(new File(checkpointDir, "aMapWholeBody.amap"));
     }
-    Body body = new Body(bodyList, fileNameList);
-    ExternalFile.createJSON(fileName);
+    ArrayList<AngleMap> bodyList = new ArrayList<>();
+    bodyList.add(aMap);
+    Body body = new Body(bodyList, tsI.size() + tsIZeroHashMap.get(0).size(), tsJ.size() + tsJZeroHashMap.get(0).size());
+    BodyAlignment alignment = body.getAlignment();
+    ExternalFile.createJSON(alignment, fileName);
+    return alignment;
   }
-  
-  public static TimeWarpInfo preWarping(double[] tsIframes, double[] tsJframes) throws Exception {
-    TimeSeries tsI = new TimeSeries(tsIframes);
-    TimeSeries tsJ = new TimeSeries(tsJframes);
-    final DistanceFunction distFn = new EuclideanDistance();
-    final TimeWarpInfo infoTSI = DTW.getWarpInfoBetween(tsI, tsJ, 500, distFn);
+
+  // Aligns a student live against the teacher video (all segments at once, like wholeBodyDTW()): every line of
+  // standard input is one student frame, one angle per segment separated by spaces or commas, and for every
+  // frame the teacher frame the student is at is printed right away (see OnlineAligner).
+  public static void liveDTW(ArrayList<String> teacherVideo, int bandRadius, DistanceFunction distFn, DTWOptions options) throws Exception {
+    final TimeSeries teacher = loadWholeBody(teacherVideo, teacherVideo.size(), new HashMap<Integer, ArrayList<Integer>>(), options);
+    final OnlineAligner aligner = new OnlineAligner(teacher, bandRadius, options, distFn);
+    final Scanner in = new Scanner(System.in);
+    final double[] angles = new double[teacher.numOfDimensions()];
+    while (in.hasNextLine()) {
+      final String line = in.nextLine().trim();
+      if (line.isEmpty()) continue;
+      final String[] values = line.split("[\\s,]+");
+      if (values.length != angles.length) {
+        System.out.println("ERROR: a frame needs " + angles.length + " angles, not " + values.length);
+        continue;
+      }
+      try {
+        for (int x = 0; x < angles.length; x++) angles[x] = Double.parseDouble(values[x]);
+      } catch (NumberFormatException e) {
+        System.out.println("ERROR: a frame can only have numbers as angles (" + e.getMessage() + ")");
+        continue;
+      }
+      final int teacherFrame = aligner.append(angles);
+      // the teacher series keeps the original frame number of every frame as its time
+      System.out.println((teacherFrame < 0) ? "-" : String.valueOf((int) teacher.getTimeAtNthPoint(teacherFrame)));
+    }
+  }
+
+  // Finds the numOfMatches places in the routine video that look the most like the move video (see SubsequenceDTW),
+  // best first, using every segment at once like wholeBodyDTW() does. The matches and their warp paths are in the
+  // original frame numbers of the two videos.
+  public static ArrayList<SubsequenceMatch> locateMove(ArrayList<String> move, ArrayList<String> routine, int numOfMatches, DistanceFunction distFn, DTWOptions options) throws Exception {
+    final int numOfSegments = Math.min(move.size(), routine.size());
+    final TimeSeries query = loadWholeBody(move, numOfSegments, new HashMap<Integer, ArrayList<Integer>>(), options);
+    final TimeSeries series = loadWholeBody(routine, numOfSegments, new HashMap<Integer, ArrayList<Integer>>(), options);
+    ArrayList<SubsequenceMatch> matches = new ArrayList<>();
+    if (query.size() == 0) return matches;
+    // the series hold the original frame number of every frame they kept as its time
+    for (SubsequenceMatch match:SubsequenceDTW.findMatches(series, query, numOfMatches, options, distFn)) {
+      final WarpPath path = new WarpPath(match.getPath().size());
+      for (int k = 0; k < match.getPath().size(); k++)
+        path.addLast((int) series.getTimeAtNthPoint(match.getPath().getI(k)), (int) query.getTimeAtNthPoint(match.getPath().getJ(k)));
+      matches.add(new SubsequenceMatch((int) series.getTimeAtNthPoint(match.getStart()), (int) series.getTimeAtNthPoint(match.getEnd()), match.getDistance(), path));
+    }
+    return matches;
+  }
+
+  // Reads the first numOfSegments angle files of a video into one time series with a dimension per segment.
+  // Only the frames every segment has are used. The indexes of the removed (zero) frames are put in the zero
+  // hash map under key 0, like buildZeroHashMap() does for a single segment. With the skip and interpolate missing
+  // policies no frame is removed: the zeroes are marked missing per segment (see markMissingFrames()) and the zero
+  // hash map gets an empty list.
+  public static TimeSeries loadWholeBody(ArrayList<String> video, int numOfSegments, Map<Integer, ArrayList<Integer>> zeroHashMap, DTWOptions options) throws Exception {
+    final boolean isStripped = options.getMissingPolicy() == DTWOptions.STRIP_MISSING;
+    double[][] segments = new double[numOfSegments][];
+    int numOfFrames = Integer.MAX_VALUE;
+    for (int k = 0; k < numOfSegments; k++) {
+      segments[k] = jsonParser(video.get(k));
+      if (!isStripped) markMissingFrames(segments[k], options);
+      numOfFrames = Math.min(numOfFrames, segments[k].length);
+    }
+    TimeSeries wholeBody = new TimeSeries(numOfSegments);
+    ArrayList<Integer> zeroIndexes = new ArrayList<>();
+    double[] frame = new double[numOfSegments];
+    for (int f = 0; f < numOfFrames; f++) {
+      boolean isDropout = false;
+      for (int k = 0; k < numOfSegments; k++) {
+        frame[k] = segments[k][f];
+        if (isStripped && frame[k] == 0) isDropout = true;
+      }
+      if (isDropout) zeroIndexes.add(f);
+      else wholeBody.addLast(f, frame);
+    }
+    zeroHashMap.put(0, zeroIndexes);
+    return wholeBody;
+  }
+
+  public static TimeWarpInfo preWarping(TimeSeries tsI, TimeSeries tsJ, DistanceFunction distFn, DTWOptions options) throws Exception {
+    final TimeWarpInfo infoTSI = DTW.getWarpInfoBetween(tsI, tsJ, options, distFn);
     return infoTSI;
   }
 
-  public static ArrayList<String> createVidNamesArrayList(String folderName) {
+  // Returns the angle files of a video folder, or the segments of a video's .angles container.
+  public static ArrayList<String> createVidNamesArrayList(String folderName) throws IOException {
+    if (AngleSeriesFile.isContainer(folderName)) return AngleSeriesFile.open(folderName).createSegmentNames();
     File f = new File(folderName);
-    ArrayList<String> fileNames = new ArrayList<String>(Arrays.asList(f.list()));
-    if (fileNames.isEmpty()) {
+    String[] list = f.list();
+    if (list != null && list.length == 0) {
       System.out.println("ERROR: One of the folders you provided is empty. Check if you have a typo in your folder location.");
       System.exit(0);
     }
+    return listVidNames(folderName);
+  }
+
+  // Same, but a folder that doesn't exist (a NotDirectoryException) or is empty is an IOException instead of the end
+  // of the program, for callers that go on with the other videos (see BatchComparison).
+  public static ArrayList<String> listVidNames(String folderName) throws IOException {
+    if (AngleSeriesFile.isContainer(folderName)) return AngleSeriesFile.open(folderName).createSegmentNames();
+    String[] fileNames = new File(folderName).list();
+    if (fileNames == null) throw new NotDirectoryException(folderName);
+    if (fileNames.length == 0) throw new IOException("'" + folderName + "' is empty");
     ArrayList<String> vidNames = new ArrayList<String>();
-    for (int i = 0; i < fileNames.size(); i++) {
-      vidNames.add(folderName + "\\" + fileNames.get(i));
+    for (int i = 0; i < fileNames.length; i++) {
+      vidNames.add(folderName + "\\" + fileNames[i]);
     }
     return vidNames;
   }
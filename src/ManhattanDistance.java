@@ -0,0 +1,16 @@
+public class ManhattanDistance implements DistanceFunction {
+   public ManhattanDistance() {}
+   public double calcDistance(double[] vector1, double[] vector2) {
+      if (vector1.length != vector2.length) throw new InternalError("ERROR:  cannot calculate the distance between vectors of different sizes.");
+      return calcDistance(vector1, 0, vector2, 0, vector1.length);
+   }
+   public double calcDistance(double[] values1, int offset1, double[] values2, int offset2, int length) {
+      double absSum = 0.0;
+      for (int x=0; x < length; x++)
+          absSum += Math.abs(values1[offset1+x]-values2[offset2+x]);
+      return absSum;
+   }
+   public double calcDistance(double value1, double value2) { return Math.abs(value1-value2); }
+   // a sum over the dimensions, without a root
+   public double scaleDimensions(double distance, double factor) { return distance*factor; }
+}
\ No newline at end of file
@@ -0,0 +1,81 @@
+// Wraps another distance function so time series can have missing (NaN) values, e.g. OpenPose dropouts, and
+// still be aligned without removing those frames first.
+// A dimension that is missing in either point is left out of the distance, and the distance of the dimensions
+// that are left is scaled up to all of them (see DistanceFunction.scaleDimensions()), so a point doesn't get
+// closer by missing more. If every dimension is missing the distance is the fixed missingCost (the cost of warping
+// past a missing frame, see DTWOptions.getDistFn()).
+public class MissingValueDistance implements DistanceFunction {
+   // The points with missing values are copied into these, one pair per thread, grown when a longer point comes
+   // along.
+   private static final ThreadLocal<double[][]> presentBuffers = ThreadLocal.withInitial(() -> new double[2][0]);
+   private final DistanceFunction distFn;
+   private final double missingCost;
+
+   // @param : the distance function for the values that are there
+   // @param : the distance of a point that has nothing to compare
+   public MissingValueDistance(DistanceFunction distFn, double missingCost) {
+      if (missingCost < 0.0) throw new InternalError("ERROR:  the cost of a missing value can not be negative.");
+      this.distFn = distFn;
+      this.missingCost = missingCost;
+   }
+
+   public double calcDistance(double[] vector1, double[] vector2) {
+      if (vector1.length != vector2.length) throw new InternalError("ERROR:  cannot calculate the distance between vectors of different sizes.");
+      return calcDistance(vector1, 0, vector2, 0, vector1.length);
+   }
+   // Returns true if every dimension is missing in one point or the other.
+   private static boolean isMissing(double[] values1, int offset1, double[] values2, int offset2, int length) {
+      for (int x=0; x < length; x++)
+         if (!Double.isNaN(values1[offset1+x]) && !Double.isNaN(values2[offset2+x])) return false;
+      return true;
+   }
+   public double calcDistance(double[] values1, int offset1, double[] values2, int offset2, int length) {
+      int numOfMissing = 0;
+      for (int x=0; x < length; x++)
+         if (Double.isNaN(values1[offset1+x]) || Double.isNaN(values2[offset2+x])) numOfMissing++;
+      if (numOfMissing == 0) return distFn.calcDistance(values1, offset1, values2, offset2, length);
+      if (numOfMissing == length) return missingCost;
+      // Only points with missing values get here, so only they pay for the copies. A missing dimension is 0 in
+      // both copies, which adds nothing to the distance, and every dimension stays where it was (so e.g. the
+      // weights of a WeightedEuclideanDistance still line up).
+      double[][] present = presentBuffers.get();
+      if (present[0].length < length) {
+         present = new double[][] { new double[length], new double[length] };
+         presentBuffers.set(present);
+      }
+      final double[] present1 = present[0];
+      final double[] present2 = present[1];
+      for (int x=0; x < length; x++) {
+         final boolean isPresent = !Double.isNaN(values1[offset1+x]) && !Double.isNaN(values2[offset2+x]);
+         present1[x] = isPresent ? values1[offset1+x] : 0.0;
+         present2[x] = isPresent ? values2[offset2+x] : 0.0;
+      }
+      return distFn.scaleDimensions(distFn.calcDistance(present1, 0, present2, 0, length), (double)length/(length-numOfMissing));
+   }
+   public double calcDistance(double value1, double value2) {
+      if (Double.isNaN(value1) || Double.isNaN(value2)) return missingCost;
+      return distFn.calcDistance(value1, value2);
+   }
+
+   // The mean distance (with distFn, missing dimensions handled as above) of the points of tsI and tsJ that are
+   // paired up along the diagonal, leaving out the pairs with nothing to compare. That is about what a step of a
+   // warp path between the two costs, whatever the metric and the number of dimensions; 0 if nothing is there.
+   public static double meanDistance(DistanceFunction distFn, TimeSeries tsI, TimeSeries tsJ) {
+      final int numOfPairs = Math.max(tsI.size(), tsJ.size());
+      if (tsI.size() == 0 || tsJ.size() == 0) return 0.0;
+      final MissingValueDistance presentDistFn = new MissingValueDistance(distFn, 0.0);
+      final int numOfDimensions = tsI.numOfDimensions();
+      final double[] values1 = tsI.measurementArray();
+      final double[] values2 = tsJ.measurementArray();
+      double sum = 0.0;
+      int numOfPresent = 0;
+      for (int k = 0; k < numOfPairs; k++) {
+         final int i = (numOfPairs == 1) ? 0 : (int)((long)k*(tsI.size()-1)/(numOfPairs-1));
+         final int j = (numOfPairs == 1) ? 0 : (int)((long)k*(tsJ.size()-1)/(numOfPairs-1));
+         if (isMissing(values1, i*numOfDimensions, values2, j*numOfDimensions, numOfDimensions)) continue;
+         sum += presentDistFn.calcDistance(values1, i*numOfDimensions, values2, j*numOfDimensions, numOfDimensions);
+         numOfPresent++;
+      }
+      return (numOfPresent == 0) ? 0.0 : sum/numOfPresent;
+   }
+}
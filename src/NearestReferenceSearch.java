@@ -0,0 +1,112 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Finds the teacher video a student is closest to (the lowest warp distance, see Main.bodyWarpDistance()) without
+// aligning the student with every teacher.
+// Every teacher first gets a lower bound of its distance: the LB_Kim and LB_Keogh bounds (see LowerBound) of its
+// segments added up. The teachers are then tried from the lowest bound up, and each one goes through a cascade:
+// it is pruned if its LB_Kim or LB_Keogh bound is already over the best distance so far, and otherwise aligned
+// with that distance as the upper bound, which abandons it as soon as it can't win (see DTW.getWarpDistBetween()).
+// The counts of each outcome are kept over every search, so the prune rates can be reported.
+public class NearestReferenceSearch {
+  private final ArrayList<String> teacherFolders = new ArrayList<>();
+  private final ArrayList<ArrayList<String>> teacherVidNames = new ArrayList<>();
+  private final DTWOptions options;
+  private final ReferenceCache studentCache;
+  // STATISTICS
+  private long numOfCandidates;
+  private long numPrunedByKim;
+  private long numPrunedByKeogh;
+  private long numAbandoned;
+  private long numAligned;
+  private long numSkipped;
+
+  // The students are read through the options' student cache (like Main.bodyDTW() and BatchComparison do), so a
+  // student searched for again, or one of a later search, doesn't have to be read and coarsened again. Without one
+  // they get a cache as big as the teachers'.
+  // @param : the teacher folders (or .angles containers) to search
+  // @param : how to align, with the distance function of every segment (see DTWOptions.getSegmentDistFn())
+  public NearestReferenceSearch(List<String> teacherFolders, DTWOptions options) throws IOException {
+    for (String folderName:teacherFolders) {
+      this.teacherFolders.add(folderName);
+      teacherVidNames.add(Main.createVidNamesArrayList(folderName));
+    }
+    this.options = new DTWOptions(options);
+    if (this.options.getStudentCache() == null) this.options.setStudentCache(new ReferenceCache(ReferenceCache.shared().getMemoryBudget()));
+    studentCache = this.options.getStudentCache();
+  }
+
+  // Returns the nearest teacher of the student and its warp distance (+Infinity and no teacher if the student
+  // can't be aligned with any of them). Ties go to the teacher that comes first.
+  public ComparisonResult search(String studentFolder) throws Exception {
+    final ArrayList<String> studentVidNames = Main.createVidNamesArrayList(studentFolder);
+    final int numOfSegments = studentVidNames.size();
+    // the student is read once, for the bounds and for every alignment (unless the cache is turned off)
+    final ArrayList<SegmentSeries> student = new ArrayList<>();
+    for (String segmentName:studentVidNames) student.add(studentCache.get(segmentName, options));
+
+    // the bounds of every teacher: [0] LB_Kim, [1] LB_Keogh (at least LB_Kim)
+    final double[][] bounds = new double[teacherFolders.size()][2];
+    final ArrayList<Integer> candidates = new ArrayList<>();
+    for (int t = 0; t < teacherFolders.size(); t++) {
+      final ArrayList<String> teacher = teacherVidNames.get(t);
+      // a teacher with fewer segments than the student can't be aligned with it
+      if (numOfSegments > teacher.size()) {
+        numSkipped++;
+        continue;
+      }
+      for (int i = 0; i < numOfSegments; i++) {
+        final TimeSeries tsI = student.get(i).getSeries();
+        final TimeSeries tsJ = ReferenceCache.shared().get(teacher.get(i), options).getSeries();
+        final DistanceFunction distFn = options.getSegmentDistFn(studentVidNames.get(i));
+        bounds[t][0] += LowerBound.kim(tsI, tsJ, options, distFn);
+        bounds[t][1] += LowerBound.keogh(tsI, tsJ, options, distFn);
+      }
+      candidates.add(t);
+    }
+    Collections.sort(candidates, (t1, t2) -> (bounds[t1][1] != bounds[t2][1]) ? Double.compare(bounds[t1][1], bounds[t2][1]) : Integer.compare(t1, t2));
+
+    int nearest = -1;
+    double bestDistance = Double.POSITIVE_INFINITY;
+    for (int t:candidates) {
+      numOfCandidates++;
+      // a bound equal to the best distance can still win a tie, so only bounds over it prune
+      if (bounds[t][0] > bestDistance) numPrunedByKim++;
+      else if (bounds[t][1] > bestDistance) numPrunedByKeogh++;
+      else {
+        final double warpDistance = Main.bodyWarpDistance(studentVidNames, teacherVidNames.get(t), options, bestDistance);
+        if (warpDistance == Double.POSITIVE_INFINITY) numAbandoned++;
+        else {
+          numAligned++;
+          if (warpDistance < bestDistance || (warpDistance == bestDistance && t < nearest)) {
+            bestDistance = warpDistance;
+            nearest = t;
+          }
+        }
+      }
+    }
+    return new ComparisonResult(studentFolder, (nearest < 0) ? null : teacherFolders.get(nearest), bestDistance);
+  }
+
+  public List<String> getTeacherFolders() { return Collections.unmodifiableList(teacherFolders); }
+  public long getNumOfCandidates() { return numOfCandidates; }
+  public long getNumPrunedByKim() { return numPrunedByKim; }
+  public long getNumPrunedByKeogh() { return numPrunedByKeogh; }
+  public long getNumAbandoned() { return numAbandoned; }
+  public long getNumAligned() { return numAligned; }
+  // Teachers left out because the student has more segments than they do.
+  public long getNumSkipped() { return numSkipped; }
+
+  // The fraction of candidates the lower bounds ruled out without any alignment.
+  public double getPruneRate() { return (numOfCandidates == 0) ? 0.0 : (double)(numPrunedByKim + numPrunedByKeogh)/numOfCandidates; }
+
+  public void resetStatistics() { numOfCandidates = numPrunedByKim = numPrunedByKeogh = numAbandoned = numAligned = numSkipped = 0; }
+
+  public String toString() {
+    return numOfCandidates + " candidates: " + numPrunedByKim + " pruned by LB_Kim, " + numPrunedByKeogh + " pruned by LB_Keogh, "
+        + numAbandoned + " abandoned early, " + numAligned + " aligned in full (prune rate " + String.format("%.1f%%", 100*getPruneRate()) + ")"
+        + ((numSkipped > 0) ? ", " + numSkipped + " skipped" : "");
+  }
+}
@@ -0,0 +1,150 @@
+import java.util.Arrays;
+
+// Aligns a student live, one frame at a time, against a teacher series that is known in full: after every frame
+// it says which teacher frame the student is at, so the trainer can give cues during practice.
+// It is DTW with an open end on the teacher's side: the cost matrix is filled one student column at a time (the
+// last and current column, like PartialWindowMatrix), and the student follows the teacher frame of the cheapest
+// cell of the newest column. Unlike offline DTW, every step takes one student frame and moves 0 to MAX_STEP teacher
+// frames on (Dixon's step constraint), paying the mean distance of the teacher frames it passes, so every path to a
+// column is made of the same number of terms and the cells can be compared by their cost as is. With DTW's steps
+// the paths that got further along the teacher would add up more cells, and the student would seem to hang back.
+// The position never goes back and moves on by at most MAX_STEP per frame: it moves to the cheapest cell within
+// reach, or, when the cheapest cell of the column is further ahead, as far towards it as it can.
+// Every frame costs one distance per teacher frame, or, with a band radius, per teacher frame within bandRadius of
+// the frame the student was at and of the cheapest cell of the last column (the band moves along with the student,
+// since the student's length isn't known in advance, and follows the cheapest path, so the position can't hold the
+// band back). Either way the work per frame is bounded and doesn't grow with the length of the practice.
+// A frame with a 0 angle (an OpenPose dropout) is left out with the strip missing policy, and otherwise kept with
+// the 0s as missing values (see MissingValueDistance); it can't be interpolated without the frames after it.
+public class OnlineAligner {
+  // The most teacher frames one student frame can move on by, so the student can be up to 3 times as fast.
+  public static final int MAX_STEP = 3;
+  private final TimeSeries teacher;
+  private final DistanceFunction distFn;
+  private final int bandRadius;  // negative: the whole column
+  private final boolean isStripped;
+  private final int numOfDimensions;
+  private final double[] teacherValues;
+  private final double[] frame;
+  // the last and current column, each filled in from lo to hi
+  private double[] lastCol;
+  private double[] currCol;
+  private final double[] distances;
+  private int lastLo, lastHi;
+  private int lastMinJ;  // the cheapest cell of the last column, which the band is centred on
+  private int numOfFrames;
+  private int numOfSkippedFrames;
+  private int teacherFrame = -1;
+
+  // Compares every teacher frame with every student frame.
+  public OnlineAligner(TimeSeries teacher, DTWOptions options, DistanceFunction distFn) { this(teacher, -1, options, distFn); }
+
+  // @param : the teacher series
+  // @param : how many teacher frames on either side of the current one are compared with the next student frame
+  //          (negative for all of them); at least MAX_STEP, so a narrower band is widened to that
+  // @param : what to do with missing frames (see above)
+  // @param : the distance function between a student and a teacher frame
+  public OnlineAligner(TimeSeries teacher, int bandRadius, DTWOptions options, DistanceFunction distFn) {
+    if (teacher.size() == 0) throw new InternalError("ERROR:  Can't align against an empty teacher series");
+    this.teacher = teacher;
+    this.bandRadius = (bandRadius < 0) ? bandRadius : Math.max(bandRadius, MAX_STEP);
+    isStripped = options.getMissingPolicy() == DTWOptions.STRIP_MISSING;
+    this.distFn = options.getDistFn(distFn);
+    numOfDimensions = teacher.numOfDimensions();
+    teacherValues = teacher.measurementArray();
+    frame = new double[numOfDimensions];
+    lastCol = new double[teacher.size()];
+    currCol = new double[teacher.size()];
+    distances = new double[teacher.size()];
+  }
+
+  // Adds the next student frame (one angle per dimension of the teacher) and returns the teacher frame (point of
+  // the teacher series) the student is at now, or -1 if no frame has been aligned yet.
+  public int append(double[] angles) {
+    if (angles.length != numOfDimensions) throw new InternalError("ERROR:  cannot calculate the distance between vectors of different sizes.");
+    boolean isDropout = false;
+    for (int x = 0; x < numOfDimensions; x++) {
+      frame[x] = (angles[x] == 0) ? Double.NaN : angles[x];
+      if (angles[x] == 0) isDropout = true;
+    }
+    if (isDropout && isStripped) {
+      numOfSkippedFrames++;
+      return teacherFrame;
+    }
+    final int maxJ = teacher.size() - 1;
+    final int lo;
+    final int hi;
+    if (numOfFrames == 0) {
+      // the student starts somewhere in the first MAX_STEP+1 teacher frames
+      lo = 0;
+      hi = Math.min(maxJ, MAX_STEP);
+    } else {
+      // nothing below lastLo or more than MAX_STEP above lastHi can be reached
+      lo = (bandRadius < 0) ? lastLo : Math.max(lastLo, Math.min(lastMinJ, teacherFrame) - bandRadius);
+      hi = (bandRadius < 0) ? Math.min(maxJ, lastHi + MAX_STEP) : Math.min(Math.min(maxJ, lastHi + MAX_STEP), Math.max(lastMinJ, teacherFrame) + bandRadius);
+    }
+    // the cheapest cell of the column, and the cheapest the student can move to (see below); at the first frame
+    // that is any cell of the column
+    double minCost = Double.POSITIVE_INFINITY;
+    int minJ = lo;
+    final int minCandidate = (teacherFrame < 0) ? lo : Math.max(lo, teacherFrame);
+    final int maxCandidate = (teacherFrame < 0) ? hi : Math.min(hi, teacherFrame + MAX_STEP);
+    double minCandidateCost = Double.POSITIVE_INFINITY;
+    int minCandidateJ = Math.min(minCandidate, hi);
+    for (int j = lo; j <= hi; j++) distances[j] = distance(j);
+    for (int j = lo; j <= hi; j++) {
+      if (numOfFrames == 0) currCol[j] = distances[j];
+      else {
+        // staying on teacher frame j, or coming from j-k and passing k teacher frames for the mean of their distances
+        currCol[j] = lastCost(j) + distances[j];
+        double distanceSum = 0.0;
+        for (int k = 1; k <= MAX_STEP && j-k >= 0 && j-k+1 >= lo; k++) {
+          distanceSum += distances[j-k+1];
+          currCol[j] = Math.min(currCol[j], lastCost(j-k) + distanceSum/k);
+        }
+      }
+      if (currCol[j] < minCost) {
+        minCost = currCol[j];
+        minJ = j;
+      }
+      if (j >= minCandidate && j <= maxCandidate && currCol[j] < minCandidateCost) {
+        minCandidateCost = currCol[j];
+        minCandidateJ = j;
+      }
+    }
+    final double[] swap = lastCol;
+    lastCol = currCol;
+    currCol = swap;
+    lastLo = lo;
+    lastHi = hi;
+    lastMinJ = minJ;
+    numOfFrames++;
+    // The student follows the end of the cheapest path, but never goes back and moves on by at most MAX_STEP frames
+    // at a time, so one frame that happens to look like a later part of the teacher doesn't make it jump there.
+    teacherFrame = (minJ > maxCandidate) ? maxCandidate : minCandidateJ;
+    return teacherFrame;
+  }
+
+  // The teacher frame the student is at (see append()).
+  public int getTeacherFrame() { return teacherFrame; }
+  // The cost of the best alignment of the student so far with the teacher up to getTeacherFrame().
+  public double getCost() { return (teacherFrame < 0) ? Double.POSITIVE_INFINITY : lastCol[teacherFrame]; }
+  // Number of student frames aligned so far (not counting the skipped ones).
+  public int numOfFrames() { return numOfFrames; }
+  public int numOfSkippedFrames() { return numOfSkippedFrames; }
+
+  // Starts over with a new student.
+  public void reset() {
+    numOfFrames = 0;
+    numOfSkippedFrames = 0;
+    teacherFrame = -1;
+    Arrays.fill(lastCol, Double.POSITIVE_INFINITY);
+  }
+
+  private double lastCost(int j) { return (j < lastLo || j > lastHi) ? Double.POSITIVE_INFINITY : lastCol[j]; }
+
+  private double distance(int j) {
+    if (numOfDimensions == 1) return distFn.calcDistance(frame[0], teacherValues[j]);
+    return distFn.calcDistance(frame, 0, teacherValues, j*numOfDimensions, numOfDimensions);
+  }
+}
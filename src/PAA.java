@@ -1,3 +1,5 @@
+import java.util.Arrays;
+
 public class PAA extends TimeSeries {
 
    private int[] aggregatePointSize;
@@ -11,6 +13,13 @@ public class PAA extends TimeSeries {
       this.origLen = ts.size();
       this.aggregatePointSize = new int[shrunkSize];
       this.setLabels(ts.getLabels());
+      this.setMaxCapacity(shrunkSize);
+      final int numOfDimensions = ts.numOfDimensions();
+      final double[] values = ts.measurementArray();
+      // Reused for every aggregate point, addLast() copies the values into this time series.
+      final double[] measurementSums = new double[numOfDimensions];
+      // Missing (NaN) values are left out of the averages; a dimension that is missing in the whole range stays NaN.
+      final int[] measurementCounts = new int[numOfDimensions];
       final double reducedPointSize = (double)ts.size()/(double)shrunkSize;
       int pointToReadFrom = 0;
       int pointToReadTo;
@@ -18,21 +27,26 @@ public class PAA extends TimeSeries {
          pointToReadTo = (int) Math.round(reducedPointSize * (this.size() + 1)) - 1;
          final int pointsToRead = pointToReadTo - pointToReadFrom + 1;
          double timeSum = 0.0;
-         final double[] measurementSums = new double[ts.numOfDimensions()];
+         Arrays.fill(measurementSums, 0.0);
+         Arrays.fill(measurementCounts, 0);
          // Sum all of the values over the range pointToReadFrom...pointToReadFrom.
          for (int point=pointToReadFrom; point <= pointToReadTo; point++) {
-            final double[] currentPoint = ts.getMeasurementVector(point);
             timeSum += ts.getTimeAtNthPoint(point);
-            for (int dim=0; dim<ts.numOfDimensions(); dim++)
-               measurementSums[dim] += currentPoint[dim];
+            for (int dim=0; dim<numOfDimensions; dim++) {
+               final double value = values[point*numOfDimensions + dim];
+               if (value == value) {  // not NaN
+                  measurementSums[dim] += value;
+                  measurementCounts[dim]++;
+               }
+            }
          }
          // Determine the average value
          timeSum = timeSum / pointsToRead;
-         for (int dim=0; dim<ts.numOfDimensions(); dim++)
-               measurementSums[dim] = measurementSums[dim] / pointsToRead;   // find the average of each measurement
+         for (int dim=0; dim<numOfDimensions; dim++)
+               measurementSums[dim] = (measurementCounts[dim] > 0) ? measurementSums[dim] / measurementCounts[dim] : Double.NaN;   // find the average of each measurement
          // Add the computed average value to the aggregate approximation.
          this.aggregatePointSize[super.size()] = pointsToRead;
-         this.addLast(timeSum, new TSPoint(measurementSums));
+         this.addLast(timeSum, measurementSums);
 
          pointToReadFrom = pointToReadTo + 1; // next window of points to average startw where the last window ended
       }
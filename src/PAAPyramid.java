@@ -0,0 +1,51 @@
+import java.util.ArrayList;
+
+// A time series and all of its PAA coarsenings: level 0 is the series itself and level d+1 is level d shrunk by
+// the resolution factor, exactly like DTW.recursiveDTW() shrinks the series on its way down. A pyramid that is kept
+// (see ReferenceCache) means the coarsenings of a series that is aligned again and again are computed only once.
+// Levels are built the first time they are asked for, so only as far down as the recursion actually goes; a
+// pyramid can be shared between threads (the series itself is final, the coarser levels are built under the lock).
+public class PAAPyramid {
+  private final double resolutionFactor;
+  private final TimeSeries series;
+  private final ArrayList<TimeSeries> levels;  // level 0 (the series) and the levels built so far
+
+  public PAAPyramid(TimeSeries ts, double resolutionFactor) {
+    if (!(resolutionFactor > 1.0)) throw new InternalError("ERROR:  The resolution factor has to be more than 1 (" + resolutionFactor + ")");
+    this.resolutionFactor = resolutionFactor;
+    series = ts;
+    levels = new ArrayList<>();
+    levels.add(ts);
+  }
+
+  public double getResolutionFactor() { return resolutionFactor; }
+  public TimeSeries getSeries() { return series; }
+
+  // Returns level d (d > 0 is a PAA).
+  public TimeSeries getLevel(int d) {
+    if (d == 0) return series;
+    return getCoarserLevel(d);
+  }
+
+  private synchronized TimeSeries getCoarserLevel(int d) {
+    while (levels.size() <= d) {
+      final TimeSeries coarsest = levels.get(levels.size() - 1);
+      final int shrunkSize = (int)(coarsest.size()/resolutionFactor);
+      if (shrunkSize < 1) throw new InternalError("ERROR:  A series of " + coarsest.size() + " points can't be shrunk by a resolution factor of " + resolutionFactor);
+      levels.add(new PAA(coarsest, shrunkSize));
+    }
+    return levels.get(d);
+  }
+
+  // Number of levels built so far.
+  public synchronized int numOfLevels() { return levels.size(); }
+
+  // Rough number of bytes the pyramid takes up with every level that can be built (measurements, time readings
+  // and PAA block sizes). It doesn't change as the levels are built, so a cache can count it up front.
+  public long memorySize() {
+    final long pointSize = 8L * series.numOfDimensions() + 8 + 4;
+    long bytes = 0;
+    for (int size = series.size(); size >= 1; size = (int)(size/resolutionFactor)) bytes += size * pointSize;
+    return bytes;
+  }
+}
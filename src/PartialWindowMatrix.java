@@ -14,7 +14,11 @@ class PartialWindowMatrix implements CostMatrix {
       currCol = new double[window.maxJforI(1)-window.minJforI(1)+1];
       currColIndex = 1;
       minLastRow = window.minJforI(currColIndex-1);
-    } else currColIndex = 0;
+    } else {
+      // a single column: it is the current one
+      currColIndex = 0;
+      currCol = new double[window.maxJforI(0)-window.minJforI(0)+1];
+    }
     minCurrRow = window.minJforI(currColIndex);
     lastCol = new double[window.maxJforI(0)-window.minJforI(0)+1];
   } 
@@ -0,0 +1,86 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Keeps the teacher (reference) segments that were aligned against, with their whole PAA pyramid, so the teacher
+// side of a comparison is only loaded and coarsened once per process no matter how many students are graded
+// against it. An entry is loaded again when its file changes (modification time or length) or when it was
+// prepared for another missing policy or resolution factor.
+// When the entries take up more than the memory budget the least recently used ones are dropped. An entry is
+// counted with its whole pyramid from the start (see PAAPyramid.memorySize()), since the levels are only built
+// later, while the recursion runs.
+public class ReferenceCache {
+  public static final long DEFAULT_MEMORY_BUDGET = 256L << 20;  // bytes
+  private static final ReferenceCache shared = new ReferenceCache(DEFAULT_MEMORY_BUDGET);
+
+  // access order, so the first entry is always the least recently used one
+  private final LinkedHashMap<String, SegmentSeries> references = new LinkedHashMap<>(16, 0.75f, true);
+  private long memoryBudget;
+  private long memoryUsed;
+  private long numOfHits;
+  private long numOfMisses;
+
+  public ReferenceCache(long memoryBudget) { setMemoryBudget(memoryBudget); }
+
+  // The cache Main aligns every teacher segment through.
+  public static ReferenceCache shared() { return shared; }
+
+  // Returns the segment prepared for options, from the cache if it is there and up to date.
+  public SegmentSeries get(String angleFileName, DTWOptions options) throws IOException {
+    final String key = createKey(angleFileName);
+    synchronized (this) {
+      final SegmentSeries reference = references.get(key);
+      if (reference != null && reference.isCurrent(options)) {
+        numOfHits++;
+        return reference;
+      }
+      numOfMisses++;
+    }
+    // loaded outside the lock, so the segments of a video can be loaded by several threads at once
+    final SegmentSeries reference = SegmentSeries.load(angleFileName, options);
+    put(key, reference);
+    return reference;
+  }
+
+  // Sets the budget (in bytes) and drops entries until they fit in it. A budget of 0 turns the cache off.
+  public synchronized void setMemoryBudget(long memoryBudget) {
+    if (memoryBudget < 0) throw new InternalError("ERROR:  The memory budget of a cache can't be negative (" + memoryBudget + ")");
+    this.memoryBudget = memoryBudget;
+    evict();
+  }
+
+  public synchronized long getMemoryBudget() { return memoryBudget; }
+  public synchronized long getMemoryUsed() { return memoryUsed; }
+  public synchronized int size() { return references.size(); }
+  public synchronized long getNumOfHits() { return numOfHits; }
+  public synchronized long getNumOfMisses() { return numOfMisses; }
+
+  public synchronized void clear() {
+    references.clear();
+    memoryUsed = 0;
+  }
+
+  private synchronized void put(String key, SegmentSeries reference) {
+    final SegmentSeries replaced = references.put(key, reference);
+    if (replaced != null) memoryUsed -= replaced.memorySize();
+    memoryUsed += reference.memorySize();
+    evict();
+  }
+
+  // Drops the least recently used entries until the rest fit in the budget.
+  private void evict() {
+    final Iterator<Map.Entry<String, SegmentSeries>> entries = references.entrySet().iterator();
+    while (memoryUsed > memoryBudget && entries.hasNext()) {
+      memoryUsed -= entries.next().getValue().memorySize();
+      entries.remove();
+    }
+  }
+
+  // Segments are keyed by the absolute path of their file (and the segment name inside a container).
+  private static String createKey(String angleFileName) {
+    final File sourceFile = SegmentSeries.getSourceFile(angleFileName);
+    return sourceFile.getAbsolutePath() + angleFileName.substring(sourceFile.getPath().length());
+  }
+}
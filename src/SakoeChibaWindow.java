@@ -0,0 +1,15 @@
+// A band of bandRadius cells on both sides of the diagonal from (0,0) to (maxI,maxJ) (Sakoe & Chiba). Unlike
+// ExpandedResWindow it needs no coarser warp path, so DTW over it skips the PAA recursion altogether.
+// When the series have different lengths the band follows the stretched diagonal.
+public class SakoeChibaWindow extends SearchWindow {
+  public SakoeChibaWindow(TimeSeries tsI, TimeSeries tsJ, int bandRadius) { this(tsI.size(), tsJ.size(), bandRadius); }
+
+  public SakoeChibaWindow(int tsIsize, int tsJsize, int bandRadius) {
+    super(tsIsize, tsJsize);
+    if (bandRadius < 0) throw new InternalError("ERROR:  The band radius can't be negative (" + bandRadius + ")");
+    for (int i = minI(); i <= maxI(); i++) {
+      markVisited(i, Math.max(minJ(), diagonalMinJforI(i)-bandRadius));
+      markVisited(i, Math.min(maxJ(), diagonalMaxJforI(i)+bandRadius));
+    }
+  }
+}
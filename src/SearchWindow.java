@@ -1,6 +1,5 @@
 import java.util.Iterator;
 import java.util.Arrays;
-import java.util.ArrayList;
 import java.util.ConcurrentModificationException;
 import java.util.NoSuchElementException;
 
@@ -43,6 +42,17 @@ abstract public class SearchWindow {
 
    protected int getModCount() { return modCount; }
 
+   // The rows of column i that the straight line from (0,0) to (maxI,maxJ) passes through. Consecutive columns
+   // touch (diagonally at least), so a window that contains them always has a warp path through it.
+   protected final int diagonalMinJforI(int i) {
+      if (maxI() == 0) return minJ();
+      return (int)Math.round((double)i*maxJ()/maxI());
+   }
+   protected final int diagonalMaxJforI(int i) {
+      if (i == maxI()) return maxJ();
+      return Math.max(diagonalMinJforI(i), diagonalMinJforI(i+1)-1);
+   }
+
    protected final void expandWindow(int radius) {
       if (radius > 0) {
          // Expand the search window by one before expanding by the remainder of the radius because the function "expandSearchWindow(.) may not work correctly if the path has a width of only 1.
@@ -51,116 +61,70 @@ abstract public class SearchWindow {
       }
    }
 
+   // Moves every cell of the window radius cells in each of the 8 directions (less where an edge of the matrix is
+   // met: the move is shortened so it ends on the edge) and makes each column span all the cells that were reached.
+   // This works on the column ranges instead of the cells, so it takes O(maxI + radius) time and allocates 4
+   // arrays. A move of e cells in direction (dc,dr) from (s,r) ends at (s+dc*e, r+dr*e), where e is the smallest of
+   // radius and the room left to the edges in that direction.
    private final void expandSearchWindow(int radius) {
       if (radius > 0) {
-         final ArrayList<Object> windowCells = new ArrayList<Object>(this.size());
-         for (final Iterator<Object> cellIter=this.iterator(); cellIter.hasNext();) windowCells.add(cellIter.next());
-         for (int cell=0; cell<windowCells.size(); cell++) {
-            final ColMajorCell currentCell = (ColMajorCell)windowCells.get(cell);
-            if ( (currentCell.getCol() != minI()) && (currentCell.getRow() != maxJ()) ) { // move to upper left if possible
-               // Either extend full search radius or some fraction until edges of matrix are met.
-               final int targetCol = currentCell.getCol()-radius;
-               final int targetRow = currentCell.getRow()+radius;
-
-               if ( (targetCol>=minI()) && (targetRow<=maxJ())) markVisited(targetCol, targetRow);
-               else {
-                  // Expand the window only to the edge of the matrix.
-                  final int cellsPastEdge = Math.max(minI()-targetCol, targetRow-maxJ());
-                  markVisited(targetCol+cellsPastEdge, targetRow-cellsPastEdge);
-               }
-            }
-
-            if (currentCell.getRow() != maxJ()) { // move up if possible
-               // Either extend full search radius or some fraction until edges of matrix are met.
-               final int targetCol = currentCell.getCol();
-               final int targetRow = currentCell.getRow()+radius;
-
-               if (targetRow <= maxJ()) markVisited(targetCol, targetRow);  // radius does not go past the edges of the matrix
-               else {
-                  // Expand the window only to the edge of the matrix.
-                  final int cellsPastEdge = targetRow-maxJ();
-                  markVisited(targetCol, targetRow-cellsPastEdge);
-               }
-            }
-            
-            if ((currentCell.getCol() != maxI()) && (currentCell.getRow() != maxJ())) { // move to upper right if possible
-               // Either extend full search radius or some fraction until edges of matrix are met.
-               final int targetCol = currentCell.getCol()+radius;
-               final int targetRow = currentCell.getRow()+radius;
-               
-               if ( (targetCol<=maxI()) && (targetRow<=maxJ())) markVisited(targetCol, targetRow);  // radius does not go past the edges of the matrix
-               else {
-                  // Expand the window only to the edge of the matrix.
-                  final int cellsPastEdge = Math.max(targetCol-maxI(), targetRow-maxJ());
-                  markVisited(targetCol-cellsPastEdge, targetRow-cellsPastEdge);
-               }
-            }
-
-            if (currentCell.getCol() != minI()) { // move left if possible
-               // Either extend full search radius or some fraction until edges of matrix are met.
-               final int targetCol = currentCell.getCol()-radius;
-               final int targetRow = currentCell.getRow();
-               if (targetCol >= minI()) markVisited(targetCol, targetRow);  // radius does not go past the edges of the matrix
-               else {
-                  // Expand the window only to the edge of the matrix.
-                  final int cellsPastEdge = minI()-targetCol;
-                  markVisited(targetCol+cellsPastEdge, targetRow);
-               }
-            }
-
-            if (currentCell.getCol() != maxI()) { // move right if possible
-               // Either extend full search radius or some fraction until edges of matrix are met.
-               final int targetCol = currentCell.getCol()+radius;
-               final int targetRow = currentCell.getRow();
-               if (targetCol <= maxI()) markVisited(targetCol, targetRow);  // radius does not go past the edges of the matrix
-               else {
-                  // Expand the window only to the edge of the matrix.
-                  final int cellsPastEdge = targetCol-maxI();
-                  markVisited(targetCol-cellsPastEdge, targetRow);
-               }
-            }
-
-            if ( (currentCell.getCol() != minI()) && (currentCell.getRow() != minJ()) ) { // move to lower left if possible
-               // Either extend full search radius or some fraction until edges of matrix are met.
-               final int targetCol = currentCell.getCol()-radius;
-               final int targetRow = currentCell.getRow()-radius;
-
-               if ( (targetCol>=minI()) && (targetRow>=minJ())) markVisited(targetCol, targetRow);  // radius does not go past the edges of the matrix
-               else {
-                  // Expand the window only to the edge of the matrix.
-                  final int cellsPastEdge = Math.max(minI()-targetCol, minJ()-targetRow);
-                  markVisited(targetCol+cellsPastEdge, targetRow+cellsPastEdge);
-               }
-            }
-            
-            if (currentCell.getRow() != minJ()) { // move down if possible
-               // Either extend full search radius or some fraction until edges of matrix are met.
-               final int targetCol = currentCell.getCol();
-               final int targetRow = currentCell.getRow()-radius;
-
-               if (targetRow >= minJ()) markVisited(targetCol, targetRow);  // radius does not go past the edges of the matrix
-               else {
-                  // Expand the window only to the edge of the matrix.
-                  final int cellsPastEdge = minJ()-targetRow;
-                  markVisited(targetCol, targetRow+cellsPastEdge);
-               }
+         final int numOfCols = minValues.length;
+         final int[] newMin = new int[numOfCols];
+         final int[] newMax = new int[numOfCols];
+         // the moves that run into the top (bottom) edge end on row maxJ (minJ) in a range of columns
+         final int[] topEdgeCover = new int[numOfCols+1];
+         final int[] bottomEdgeCover = new int[numOfCols+1];
+         for (int c=0; c<numOfCols; c++) {
+            newMin[c] = (minValues[c] == -1) ? Integer.MAX_VALUE : minValues[c];
+            newMax[c] = (minValues[c] == -1) ? Integer.MIN_VALUE : maxValues[c];
+         }
+         for (int s=0; s<numOfCols; s++) {
+            if (minValues[s] == -1) continue;
+            // (the cells used to be taken from iterator(), which starts column minI at row minJ)
+            final int lo = (s == minI()) ? minJ() : minValues[s];
+            final int hi = maxValues[s];
+            // up and down
+            newMax[s] = Math.max(newMax[s], Math.min(hi+radius, maxJ()));
+            newMin[s] = Math.min(newMin[s], Math.max(lo-radius, minJ()));
+            for (int dc=-1; dc<=1; dc+=2) {
+               final int colStep = Math.min(radius, (dc < 0) ? s-minI() : maxI()-s);
+               final int targetCol = s+dc*colStep;
+               // left / right
+               markRange(newMin, newMax, targetCol, lo, hi);
+               // upper left / upper right: rows up to maxJ-colStep move the whole colStep, the rest stop at maxJ
+               if (lo <= maxJ()-colStep) markRange(newMin, newMax, targetCol, lo+colStep, Math.min(hi, maxJ()-colStep)+colStep);
+               if (hi > maxJ()-colStep) markEdgeRange(topEdgeCover, s+dc*(maxJ()-hi), s+dc*(maxJ()-Math.max(lo, maxJ()-colStep+1)));
+               // lower left / lower right: rows from colStep on move the whole colStep, the rest stop at minJ
+               if (hi >= minJ()+colStep) markRange(newMin, newMax, targetCol, Math.max(lo, minJ()+colStep)-colStep, hi-colStep);
+               if (lo < minJ()+colStep) markEdgeRange(bottomEdgeCover, s+dc*(lo-minJ()), s+dc*(Math.min(hi, minJ()+colStep-1)-minJ()));
             }
-            
-            if ((currentCell.getCol() != maxI()) && (currentCell.getRow() != minJ())) { // move to lower right if possible
-               // Either extend full search radius or some fraction until edges of matrix are met.
-               final int targetCol = currentCell.getCol()+radius;
-               final int targetRow = currentCell.getRow()-radius;
-
-               if ( (targetCol<=maxI()) && (targetRow>=minJ())) markVisited(targetCol, targetRow);  // radius does not go past the edges of the matrix
-               else {
-                  // Expand the window only to the edge of the matrix.
-                  final int cellsPastEdge = Math.max(targetCol-maxI(), minJ()-targetRow);
-                  markVisited(targetCol-cellsPastEdge, targetRow+cellsPastEdge);
-               }
+         }
+         int topCover = 0;
+         int bottomCover = 0;
+         for (int c=0; c<numOfCols; c++) {
+            topCover += topEdgeCover[c];
+            bottomCover += bottomEdgeCover[c];
+            if (topCover > 0) markRange(newMin, newMax, c, maxJ(), maxJ());
+            if (bottomCover > 0) markRange(newMin, newMax, c, minJ(), minJ());
+            if (newMin[c] != Integer.MAX_VALUE) {
+               markVisited(c, newMin[c]);
+               markVisited(c, newMax[c]);
             }
          }
       }
    }
+
+   // Widens column col of newMin/newMax to include the rows from..to.
+   private static void markRange(int[] newMin, int[] newMax, int col, int from, int to) {
+      if (from < newMin[col]) newMin[col] = from;
+      if (to > newMax[col]) newMax[col] = to;
+   }
+
+   // Marks the columns between col1 and col2 (in either order) in a difference array.
+   private static void markEdgeRange(int[] edgeCover, int col1, int col2) {
+      edgeCover[Math.min(col1, col2)]++;
+      edgeCover[Math.max(col1, col2)+1]--;
+   }
    
    protected final void markVisited(int col, int row) {
       if (minValues[col] == -1) { // first value is entered in the column
@@ -0,0 +1,78 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+// The angles of one segment of a video, loaded and ready for DTW: the zero frames are handled the way the missing
+// policy says (see Main.buildZeroHashMap() / Main.markMissingFrames()), the original number of every frame that
+// is left is known, and the series comes with a PAA pyramid of its coarsenings.
+// It remembers which version of which file it was loaded from, so ReferenceCache can tell when it is out of date.
+public class SegmentSeries {
+  private final String angleFileName;
+  private final long lastModified;
+  private final long fileLength;
+  private final int missingPolicy;
+  private final PAAPyramid pyramid;
+  private final int[] originalFrames;  // null if no frame was removed
+  private final ArrayList<Integer> zeroIndexes;
+
+  private SegmentSeries(String angleFileName, long lastModified, long fileLength, int missingPolicy, PAAPyramid pyramid, int[] originalFrames, ArrayList<Integer> zeroIndexes) {
+    this.angleFileName = angleFileName;
+    this.lastModified = lastModified;
+    this.fileLength = fileLength;
+    this.missingPolicy = missingPolicy;
+    this.pyramid = pyramid;
+    this.originalFrames = originalFrames;
+    this.zeroIndexes = zeroIndexes;
+  }
+
+  // Reads an angle file (or a segment of a .angles container) and prepares it for DTW with options.
+  public static SegmentSeries load(String angleFileName, DTWOptions options) throws IOException {
+    final File sourceFile = getSourceFile(angleFileName);
+    final long lastModified = sourceFile.lastModified();
+    final long fileLength = sourceFile.length();
+    double[] frames = Main.jsonParser(angleFileName);
+    int[] originalFrames = null;
+    ArrayList<Integer> zeroIndexes;
+    if (options.getMissingPolicy() == DTWOptions.STRIP_MISSING) {
+      HashMap<Integer, ArrayList<Integer>> zeroHashMap = new HashMap<>();
+      originalFrames = new int[frames.length];
+      frames = Main.buildZeroHashMap(frames, 0, zeroHashMap, originalFrames);
+      originalFrames = Arrays.copyOf(originalFrames, frames.length);
+      zeroIndexes = zeroHashMap.get(0);
+    } else {
+      // nothing is removed, so the frames keep their original numbers
+      frames = Main.markMissingFrames(frames, options);
+      zeroIndexes = new ArrayList<>();
+    }
+    return new SegmentSeries(angleFileName, lastModified, fileLength, options.getMissingPolicy(), new PAAPyramid(TimeSeries.wrap(frames), options.getResolutionFactor()), originalFrames, zeroIndexes);
+  }
+
+  // The file a series is read from: the angle file itself, or the container of a segment reference.
+  public static File getSourceFile(String angleFileName) {
+    if (AngleSeriesFile.isSegmentReference(angleFileName)) return new File(angleFileName.substring(0, angleFileName.indexOf(AngleSeriesFile.EXTENSION + AngleSeriesFile.SEGMENT_SEPARATOR) + AngleSeriesFile.EXTENSION.length()));
+    return new File(angleFileName);
+  }
+
+  // Returns true if the file hasn't changed since it was loaded and the series was prepared the way options needs.
+  public boolean isCurrent(DTWOptions options) {
+    final File sourceFile = getSourceFile(angleFileName);
+    return sourceFile.lastModified() == lastModified && sourceFile.length() == fileLength
+        && options.getMissingPolicy() == missingPolicy && options.getResolutionFactor() == pyramid.getResolutionFactor();
+  }
+
+  public String getAngleFileName() { return angleFileName; }
+  public TimeSeries getSeries() { return pyramid.getSeries(); }
+  public int size() { return pyramid.getSeries().size(); }
+  // Number of frames in the file, the removed zero frames included.
+  public int getNumOfOriginalFrames() { return size() + zeroIndexes.size(); }
+  public PAAPyramid getPyramid() { return pyramid; }
+  // The original frame number of every frame of the series, or null if none was removed (they are the same).
+  public int[] getOriginalFrames() { return originalFrames; }
+  // A copy of the indexes of the zero frames that were removed.
+  public ArrayList<Integer> getZeroIndexes() { return new ArrayList<>(zeroIndexes); }
+
+  // Rough number of bytes the series takes up, pyramid included.
+  public long memorySize() { return pyramid.memorySize() + ((originalFrames == null) ? 0 : 4L * originalFrames.length) + 16L * zeroIndexes.size(); }
+}
@@ -0,0 +1,217 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+// Open-begin, open-end DTW: finds where a short query (e.g. the teacher's pirouette) shows up inside a long series
+// (e.g. a student's whole routine), without assuming the long series starts or ends with it. The whole query has
+// to be matched, but the match may start and end at any point of the long series.
+// Every step moves one point along the long series and 0, 1 or 2 points along the query (a slope constraint), and
+// a step of 2 pays for both query points it covers. Without it the whole query could pile up on a point or two of
+// the long series, which is always the cheapest: fewer points to pay for. With it a match is at least half as long
+// as the query, and covers every query point at least once, like DTW.
+// The long series is streamed in one point at a time (append()) and only one column of the cost matrix is kept,
+// with the point each cell's best path started at (Sakurai et al.'s SPRING), so the memory is linear in the
+// query and doesn't grow with the long series.
+// Matches don't overlap: once no path that started inside the best match so far can beat it any more, the match
+// is final and the cells whose paths started inside it are dropped. A better match that starts after it doesn't
+// replace it, but makes it final as it is; should a path that started inside it still beat it later on, the
+// better of the two overlapping matches is kept. The numOfMatches best ones are kept.
+// findMatches() also traces each match's WarpPath: the steps the search took, recorded over just its span.
+public class SubsequenceDTW {
+  // the steps a cell can be reached with (see append() and tracePath())
+  private static final byte DIAGONAL_STEP = 0;
+  private static final byte SERIES_STEP = 1;
+  private static final byte DOUBLE_QUERY_STEP = 2;
+  private final TimeSeries query;
+  private final DistanceFunction distFn;
+  private final int numOfMatches;
+  private final double maxDistance;
+  private final int numOfDimensions;
+  private final double[] queryValues;
+  // the last and the current column of the cost matrix, with the point of the long series each path started at
+  private double[] lastCosts;
+  private double[] currCosts;
+  private int[] lastStarts;
+  private int[] currStarts;
+  private int numOfPoints;
+  // the best match that isn't final yet
+  private double candidateDistance = Double.POSITIVE_INFINITY;
+  private int candidateStart;
+  private int candidateEnd;
+  private final ArrayList<SubsequenceMatch> matches = new ArrayList<>();  // best first
+  // the step each cell was reached with, for the points of the long series that have a row (see findMatches())
+  private byte[][] steps;
+
+  // @param : the series to look for
+  // @param : how many matches to keep
+  // @param : matches further away than this are ignored (+Infinity keeps them all)
+  // @param : missing values are handled as options says (see DTWOptions.getDistFn())
+  public SubsequenceDTW(TimeSeries query, int numOfMatches, double maxDistance, DTWOptions options, DistanceFunction distFn) {
+    this(query, numOfMatches, maxDistance, options.getDistFn(distFn));
+  }
+
+  // Same, with distFn already handling the missing values (see findMatches(), which knows the long series in full).
+  private SubsequenceDTW(TimeSeries query, int numOfMatches, double maxDistance, DistanceFunction distFn) {
+    if (query.size() == 0) throw new InternalError("ERROR:  The query of a subsequence search can't be empty");
+    if (numOfMatches < 1) throw new InternalError("ERROR:  A subsequence search has to keep at least 1 match (" + numOfMatches + ")");
+    this.query = query;
+    this.distFn = distFn;
+    this.numOfMatches = numOfMatches;
+    this.maxDistance = maxDistance;
+    numOfDimensions = query.numOfDimensions();
+    queryValues = query.measurementArray();
+    lastCosts = new double[query.size()];
+    currCosts = new double[query.size()];
+    lastStarts = new int[query.size()];
+    currStarts = new int[query.size()];
+    Arrays.fill(lastCosts, Double.POSITIVE_INFINITY);
+  }
+
+  // Adds the next point of the long series.
+  public void append(double[] point) {
+    if (point.length != numOfDimensions) throw new InternalError("ERROR:  cannot calculate the distance between vectors of different sizes.");
+    append(point, 0);
+  }
+
+  // Same, for a point stored at values[offset...offset+numOfDimensions-1].
+  private void append(double[] values, int offset) {
+    final int t = numOfPoints;
+    final int maxJ = query.size() - 1;
+    final byte[] stepRow = (steps != null && t < steps.length) ? steps[t] : null;
+    double lastDistance = 0.0;
+    for (int j = 0; j <= maxJ; j++) {
+      final double distance = distance(values, offset, j);
+      if (j == 0) {
+        // open begin: a path can start at any point
+        currCosts[0] = distance;
+        currStarts[0] = t;
+      } else {
+        // diagonal first, then along the long series, then 2 query points at once (which pays for j-1 as well)
+        double minGlobalCost = lastCosts[j-1];
+        int start = lastStarts[j-1];
+        byte step = DIAGONAL_STEP;
+        if (lastCosts[j] < minGlobalCost) {
+          minGlobalCost = lastCosts[j];
+          start = lastStarts[j];
+          step = SERIES_STEP;
+        }
+        if (j > 1 && lastCosts[j-2] + lastDistance < minGlobalCost) {
+          minGlobalCost = lastCosts[j-2] + lastDistance;
+          start = lastStarts[j-2];
+          step = DOUBLE_QUERY_STEP;
+        }
+        currCosts[j] = minGlobalCost + distance;
+        currStarts[j] = start;
+        if (stepRow != null) stepRow[j] = step;
+      }
+      lastDistance = distance;
+    }
+    if (candidateDistance != Double.POSITIVE_INFINITY) {
+      boolean isFinal = true;
+      for (int j = 0; j <= maxJ && isFinal; j++) {
+        if (currCosts[j] < candidateDistance && currStarts[j] <= candidateEnd) isFinal = false;
+      }
+      if (isFinal) {
+        addMatch(new SubsequenceMatch(candidateStart, candidateEnd, candidateDistance, null));
+        candidateDistance = Double.POSITIVE_INFINITY;
+        // no later match may overlap it
+        for (int j = 0; j <= maxJ; j++) {
+          if (currStarts[j] <= candidateEnd) currCosts[j] = Double.POSITIVE_INFINITY;
+        }
+      }
+    }
+    // open end: the query can end at any point
+    if (currCosts[maxJ] <= maxDistance && currCosts[maxJ] < candidateDistance) {
+      if (candidateDistance != Double.POSITIVE_INFINITY && currStarts[maxJ] > candidateEnd) {
+        // it doesn't overlap the candidate, so the candidate isn't beaten, just followed by a better match
+        addMatch(new SubsequenceMatch(candidateStart, candidateEnd, candidateDistance, null));
+      }
+      candidateDistance = currCosts[maxJ];
+      candidateStart = currStarts[maxJ];
+      candidateEnd = t;
+    }
+    final double[] swapCosts = lastCosts;
+    lastCosts = currCosts;
+    currCosts = swapCosts;
+    final int[] swapStarts = lastStarts;
+    lastStarts = currStarts;
+    currStarts = swapStarts;
+    numOfPoints++;
+  }
+
+  // Number of points of the long series so far.
+  public int numOfPoints() { return numOfPoints; }
+
+  // The best matches so far, best first (without their warp paths). The match that isn't final yet is included.
+  public ArrayList<SubsequenceMatch> getMatches() {
+    final ArrayList<SubsequenceMatch> allMatches = new ArrayList<>(matches);
+    if (candidateDistance != Double.POSITIVE_INFINITY) addMatch(allMatches, new SubsequenceMatch(candidateStart, candidateEnd, candidateDistance, null));
+    return allMatches;
+  }
+
+  // Finds the numOfMatches best places query shows up in series, with their warp paths, best first. Each path is
+  // the one the search found (see tracePath()), and its i indexes are points of series.
+  public static ArrayList<SubsequenceMatch> findMatches(TimeSeries series, TimeSeries query, int numOfMatches, DTWOptions options, DistanceFunction distFn) {
+    if (series.numOfDimensions() != query.numOfDimensions()) throw new InternalError("ERROR:  cannot calculate the distance between vectors of different sizes.");
+    final SubsequenceDTW search = new SubsequenceDTW(query, numOfMatches, Double.POSITIVE_INFINITY, options.getDistFn(distFn, series, query));
+    final int numOfDimensions = series.numOfDimensions();
+    final double[] values = series.measurementArray();
+    for (int t = 0; t < series.size(); t++) search.append(values, t*numOfDimensions);
+    // The search only keeps one column, so it is run again, the same way, with the steps of the matches' points
+    // recorded this time.
+    final ArrayList<SubsequenceMatch> found = search.getMatches();
+    final SubsequenceDTW replay = new SubsequenceDTW(query, numOfMatches, Double.POSITIVE_INFINITY, search.distFn);
+    replay.steps = new byte[series.size()][];
+    for (SubsequenceMatch match:found) {
+      for (int t = match.getStart(); t <= match.getEnd(); t++) replay.steps[t] = new byte[query.size()];
+    }
+    for (int t = 0; t < series.size(); t++) replay.append(values, t*numOfDimensions);
+    final ArrayList<SubsequenceMatch> matches = new ArrayList<>();
+    for (SubsequenceMatch match:found)
+      matches.add(new SubsequenceMatch(match.getStart(), match.getEnd(), match.getDistance(), replay.tracePath(match.getStart(), match.getEnd())));
+    return matches;
+  }
+
+  // The warp path of the match from start to end, traced back from (end, maxJ) through the steps this search took.
+  // They have to be recorded (see findMatches()) for every point of the span.
+  private WarpPath tracePath(int start, int end) {
+    final WarpPath path = new WarpPath(end - start + query.size());
+    int t = end;
+    int j = query.size() - 1;
+    path.addFirst(t, j);
+    while (t > start) {
+      final byte step = steps[t][j];
+      if (step == DOUBLE_QUERY_STEP) {
+        // the step pays for j-1 in the same column
+        path.addFirst(t, j - 1);
+        j -= 2;
+      } else if (step == DIAGONAL_STEP) j--;
+      t--;
+      path.addFirst(t, j);
+    }
+    return path;
+  }
+
+  private void addMatch(SubsequenceMatch match) { addMatch(matches, match); }
+
+  // Adds match unless a match it overlaps is at least as close, and drops the matches it overlaps otherwise.
+  private void addMatch(ArrayList<SubsequenceMatch> matches, SubsequenceMatch match) {
+    for (SubsequenceMatch other:matches) {
+      if (other.overlaps(match) && other.getDistance() <= match.getDistance()) return;
+    }
+    matches.removeIf(other -> other.overlaps(match));
+    insert(matches, match);
+    if (matches.size() > numOfMatches) matches.remove(matches.size() - 1);
+  }
+
+  // Inserts a match after every match that is at least as close, so equally close matches stay in stream order.
+  private static void insert(ArrayList<SubsequenceMatch> matches, SubsequenceMatch match) {
+    int index = matches.size();
+    while (index > 0 && matches.get(index - 1).getDistance() > match.getDistance()) index--;
+    matches.add(index, match);
+  }
+
+  private double distance(double[] values, int offset, int j) {
+    if (numOfDimensions == 1) return distFn.calcDistance(values[offset], queryValues[j]);
+    return distFn.calcDistance(values, offset, queryValues, j*numOfDimensions, numOfDimensions);
+  }
+}
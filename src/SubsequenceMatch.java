@@ -0,0 +1,31 @@
+// Where a query was found inside a longer series (see SubsequenceDTW).
+public class SubsequenceMatch {
+  // DATA
+  private final int start;
+  private final int end;
+  private final double distance;
+  private final WarpPath path;
+
+  // CONSTRUCTOR
+  // @param : first point of the long series in the match
+  // @param : last point of the long series in the match
+  // @param : warp distance between that span and the query
+  // @param : warp path between them, in the point numbers of the long series (i) and the query (j); may be null
+  public SubsequenceMatch(int start, int end, double distance, WarpPath path) {
+    this.start = start;
+    this.end = end;
+    this.distance = distance;
+    this.path = path;
+  }
+
+  public int getStart() { return start; }
+  public int getEnd() { return end; }
+  public int size() { return end - start + 1; }
+  public double getDistance() { return distance; }
+  public WarpPath getPath() { return path; }
+
+  // True if the two matches share a point of the long series.
+  public boolean overlaps(SubsequenceMatch other) { return start <= other.end && other.start <= end; }
+
+  public String toString() { return "(Start=" + start + ", End=" + end + ", Warp Distance=" + distance + ")"; }
+}
@@ -7,39 +7,47 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.FileOutputStream;
 import java.io.File;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Arrays;
 
 public class TimeSeries {
     private static final int[] ZERO_ARRAY = new int[0];
     private static final boolean DEFAULT_IS_TIME_1ST_COL = true;
     private static final char DEFAULT_DELIMITER = ',';
     private static final boolean DEFAULT_IS_LABELED = true;
+    private static final int DEFAULT_CAPACITY = 16;
     private final ArrayList<String> labels;
-    private final ArrayList<Double> timeReadings;
-    private final ArrayList<TSPoint> tsArray;
+    // The measurements of all points are stored in one flat array with a stride of numOfDimensions(): the values
+    // of point p are at [p*numOfDimensions(), (p+1)*numOfDimensions()).  The time column is only materialized
+    // once a point's time differs from its index, until then timeReadings is null.
+    private double[] timeReadings;
+    private double[] measurements;
+    private int size;
 
     public TimeSeries(double[] x) {
-        AtomicInteger counter = new AtomicInteger();
-        TSPoint tsValues;
-        timeReadings = new ArrayList<>();
-        ArrayList<Double> values;
         labels = new ArrayList<>();
         labels.add("Time");
         labels.add("c1");
-        tsArray = new ArrayList<>();
-        for (double value : x) {
-            timeReadings.add((double) counter.getAndIncrement());
-            values = new ArrayList<>();
-            values.add(value);
-            tsValues = new TSPoint(values);
-            tsArray.add(tsValues);
-        }
+        timeReadings = null;
+        measurements = x.clone();
+        size = x.length;
     }
     
+    // Like TimeSeries(double[]), but x becomes the series itself instead of being copied, so it must not be used
+    // anywhere else afterwards.
+    static TimeSeries wrap(double[] x) {
+        TimeSeries ts = new TimeSeries();
+        ts.labels.add("Time");
+        ts.labels.add("c1");
+        ts.measurements = x;
+        ts.size = x.length;
+        return ts;
+    }
+
     TimeSeries() {
         labels = new ArrayList<>();
-        timeReadings = new ArrayList<>();
-        tsArray = new ArrayList<>();
+        timeReadings = null;
+        measurements = new double[0];
+        size = 0;
     }
 
     public TimeSeries(int numOfDimensions) {
@@ -50,8 +58,9 @@ public class TimeSeries {
 
     public TimeSeries(TimeSeries origTS) {
         labels = new ArrayList<>(origTS.labels);
-        timeReadings = new ArrayList<>(origTS.timeReadings);
-        tsArray = new ArrayList<>(origTS.tsArray);
+        timeReadings = (origTS.timeReadings == null) ? null : Arrays.copyOf(origTS.timeReadings, origTS.size);
+        measurements = Arrays.copyOf(origTS.measurements, origTS.size * origTS.numOfDimensions());
+        size = origTS.size;
     }
 
     public TimeSeries(String inputFile, boolean isFirstColTime) { this(inputFile, ZERO_ARRAY, isFirstColTime); }
@@ -110,28 +119,27 @@ public class TimeSeries {
                 if (line.length() > 0) { // ignore empty lines
                     st = new StringTokenizer(line, String.valueOf(delimiter));
                     // Read all currentLineValues in the current line
-                    final ArrayList<Double> currentLineValues = new ArrayList<>();
+                    final double[] currentLineValues = new double[st.countTokens()];
+                    int numOfValues = 0;
                     int currentCol = 0;
                     while (st.hasMoreTokens()) {
                         final String currentToken = st.nextToken();
                         if ((colToInclude.length == 0) || (contains(colToInclude, currentCol))) {
-                            final Double nextValue;
                             try {
-                                nextValue = Double.valueOf(currentToken);
+                                currentLineValues[numOfValues++] = Double.parseDouble(currentToken);
                             } catch (NumberFormatException e) {
                                 throw new InternalError("ERROR:  '" + currentToken + "' is not a valid number");
                             }
-                            currentLineValues.add(nextValue);
                         }
                         currentCol++;
                     }
-                    if (isFirstColTime) timeReadings.add(currentLineValues.get(0));
-                    else timeReadings.add(Double.valueOf(timeReadings.size()));
                     final int firstMeasurement;
                     if (isFirstColTime) firstMeasurement = 1;
                     else firstMeasurement = 0;
-                    final TSPoint readings = new TSPoint(currentLineValues.subList(firstMeasurement, currentLineValues.size()));
-                    tsArray.add(readings);
+                    final double time;
+                    if (isFirstColTime) time = currentLineValues[0];
+                    else time = size;
+                    appendPoint(time, currentLineValues, firstMeasurement, numOfValues - firstMeasurement);
                 }
             }
             br.close();
@@ -147,13 +155,16 @@ public class TimeSeries {
     }
     public void clear() {
         labels.clear();
-        timeReadings.clear();
-        tsArray.clear();
+        timeReadings = null;
+        size = 0;
     }
-    public int size() {return timeReadings.size(); }
+    public int size() {return size; }
     public int numOfPts() { return this.size(); }
     public int numOfDimensions() { return labels.size() - 1; }
-    public double getTimeAtNthPoint(int n) { return ((Double) timeReadings.get(n)).doubleValue(); }
+    public double getTimeAtNthPoint(int n) {
+        if (n >= size) throw new IndexOutOfBoundsException("Index: " + n + ", Size: " + size);
+        return (timeReadings == null) ? n : timeReadings[n];
+    }
     public String getLabel(int index) { return (String) labels.get(index); }
     public String[] getLabelsArr() {
         final String[] labelArr = new String[labels.size()];
@@ -172,15 +183,24 @@ public class TimeSeries {
         for (int x = 0; x < newLabels.length; x++)
             labels.add(newLabels[x]);
     }
-    public double getMeasurement(int pointIndex, int valueIndex) { return ((TSPoint) tsArray.get(pointIndex)).get(valueIndex); }
+    public double getMeasurement(int pointIndex, int valueIndex) { return measurements[index(pointIndex, valueIndex)]; }
     public double getMeasurement(int pointIndex, String valueLabel) {
         final int valueIndex = labels.indexOf(valueLabel);
         if (valueIndex < 0)
             throw new InternalError("ERROR:  the label '" + valueLabel + "' was not one of:  " + labels);
-        return ((TSPoint) tsArray.get(pointIndex)).get(valueIndex - 1);
+        return measurements[index(pointIndex, valueIndex - 1)];
+    }
+    // Returns a copy of the values of one point.  The DTW kernels read measurementArray() directly instead.
+    public double[] getMeasurementVector(int pointIndex) {
+        final int numOfDimensions = numOfDimensions();
+        final int offset = index(pointIndex, 0);
+        return Arrays.copyOfRange(measurements, offset, offset + numOfDimensions);
     }
-    public double[] getMeasurementVector(int pointIndex) { return ((TSPoint) tsArray.get(pointIndex)).toArray(); }
-    public void setMeasurement(int pointIndex, int valueIndex, double newValue) { ((TSPoint) tsArray.get(pointIndex)).set(valueIndex, newValue); }
+    public void setMeasurement(int pointIndex, int valueIndex, double newValue) { measurements[index(pointIndex, valueIndex)] = newValue; }
+
+    // The flat measurement array (see the field comment), it may be longer than size()*numOfDimensions().
+    double[] measurementArray() { return measurements; }
+
     public void addFirst(double time, TSPoint values) {
         if (labels.size() != values.size() + 1)
             throw new InternalError("ERROR:  The TSPoint: " + values +
@@ -188,47 +208,54 @@ public class TimeSeries {
                     "expected:  " + labels.size() + ", " +
                     "found: " + values.size());
 
-        if (time >= ((Double) timeReadings.get(0)).doubleValue())
+        if (time >= getTimeAtNthPoint(0))
             throw new InternalError("ERROR:  The point being inserted into the " +
                     "beginning of the time series does not have " +
                     "the correct time sequence. ");
 
-        timeReadings.add(0, Double.valueOf(time));
-        tsArray.add(0, values);
+        final int numOfDimensions = numOfDimensions();
+        materializeTimeReadings();
+        ensureCapacity(size + 1);
+        System.arraycopy(timeReadings, 0, timeReadings, 1, size);
+        System.arraycopy(measurements, 0, measurements, numOfDimensions, size * numOfDimensions);
+        timeReadings[0] = time;
+        System.arraycopy(values.toArray(), 0, measurements, 0, numOfDimensions);
+        size++;
     }
 
-    public void addLast(double time, TSPoint values) {
-        if (labels.size() != values.size() + 1)
-            throw new InternalError("ERROR:  The TSPoint: " + values +
+    public void addLast(double time, TSPoint values) { addLast(time, values.toArray()); }
+
+    public void addLast(double time, double[] values) {
+        if (labels.size() != values.length + 1)
+            throw new InternalError("ERROR:  The TSPoint: " + new TSPoint(values) +
                     " contains the wrong number of values. " +
                     "expected:  " + labels.size() + ", " +
-                    "found: " + values.size());
+                    "found: " + values.length);
 
-        if ((this.size() > 0) && (time <= ((Double) timeReadings.get(timeReadings.size() - 1)).doubleValue()))
+        if ((this.size() > 0) && (time <= getTimeAtNthPoint(size - 1)))
             throw new InternalError("ERROR:  The point being inserted at the " +
                     "end of the time series does not have " +
                     "the correct time sequence. ");
 
-        timeReadings.add(Double.valueOf(time));
-        tsArray.add(values);
+        appendPoint(time, values, 0, values.length);
     }
 
     public void removeFirst() {
         if (this.size() == 0)
             System.err.println("WARNING:  TSPoint:removeFirst() called on an empty time series!");
         else {
-            timeReadings.remove(0);
-            tsArray.remove(0);
+            final int numOfDimensions = numOfDimensions();
+            materializeTimeReadings();
+            System.arraycopy(timeReadings, 1, timeReadings, 0, size - 1);
+            System.arraycopy(measurements, numOfDimensions, measurements, 0, (size - 1) * numOfDimensions);
+            size--;
         }
     }
 
     public void removeLast() {
         if (this.size() == 0)
             System.err.println("WARNING:  TSPoint:removeLast() called on an empty time series!");
-        else {
-            tsArray.remove(timeReadings.size() - 1);
-            timeReadings.remove(timeReadings.size() - 1);
-        }
+        else size--;
     }
 
     public void normalize() {
@@ -269,23 +296,52 @@ public class TimeSeries {
         final StringBuffer outStr = new StringBuffer();
 
         // Write the data for each row.
-        for (int r = 0; r < timeReadings.size(); r++) {
+        final int numOfDimensions = numOfDimensions();
+        for (int r = 0; r < size; r++) {
 
             // The rest of the value on the row.
-            final TSPoint values = (TSPoint) tsArray.get(r);
-            for (int c = 0; c < values.size(); c++)
-                outStr.append(values.get(c));
+            for (int c = 0; c < numOfDimensions; c++)
+                outStr.append(measurements[r * numOfDimensions + c]);
 
-            if (r < timeReadings.size() - 1)
+            if (r < size - 1)
                 outStr.append("\n");
         }
 
         return outStr.toString();
     }
 
-    protected void setMaxCapacity(int capacity) {
-        this.timeReadings.ensureCapacity(capacity);
-        this.tsArray.ensureCapacity(capacity);
+    protected void setMaxCapacity(int capacity) { ensureCapacity(capacity); }
+
+    // Adds a point without checking its time, its values are values[offset...offset+numOfValues-1].
+    private void appendPoint(double time, double[] values, int offset, int numOfValues) {
+        final int numOfDimensions = numOfDimensions();
+        if (numOfValues != numOfDimensions)
+            throw new InternalError("ERROR:  A point with " + numOfValues + " values can not be added to a time series with " + numOfDimensions + " dimensions.");
+        if ((timeReadings == null) && (time != size)) materializeTimeReadings();
+        ensureCapacity(size + 1);
+        if (timeReadings != null) timeReadings[size] = time;
+        System.arraycopy(values, offset, measurements, size * numOfDimensions, numOfDimensions);
+        size++;
+    }
+
+    private void ensureCapacity(int numOfPoints) {
+        final int numOfValues = numOfPoints * Math.max(numOfDimensions(), 1);
+        if (measurements.length < numOfValues)
+            measurements = Arrays.copyOf(measurements, Math.max(numOfValues, Math.max(measurements.length * 2, DEFAULT_CAPACITY)));
+        if ((timeReadings != null) && (timeReadings.length < numOfPoints))
+            timeReadings = Arrays.copyOf(timeReadings, Math.max(numOfPoints, timeReadings.length * 2));
+    }
+
+    private void materializeTimeReadings() {
+        if (timeReadings == null) {
+            timeReadings = new double[Math.max(size, DEFAULT_CAPACITY)];
+            for (int n = 0; n < size; n++) timeReadings[n] = n;
+        }
+    }
+
+    private int index(int pointIndex, int valueIndex) {
+        if ((pointIndex < 0) || (pointIndex >= size)) throw new IndexOutOfBoundsException("Index: " + pointIndex + ", Size: " + size);
+        return pointIndex * numOfDimensions() + valueIndex;
     }
 
     private static boolean contains(int arr[], int val) {
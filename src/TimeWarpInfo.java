@@ -1,12 +1,16 @@
 public class TimeWarpInfo {
    private final double distance;
    private final WarpPath path;
-   TimeWarpInfo(double dist, WarpPath wp) {
+   private final double[] pathCosts;   // cost matrix value at each cell of the path, indexed like the path
+   TimeWarpInfo(double dist, WarpPath wp, double[] costs) {
       distance = dist;
       path = wp;
+      pathCosts = costs;
    }
    public double getDistance() { return distance; }
    public WarpPath getPath() { return path; }
+   public double getPathCost(int pathIndex) { return pathCosts[pathIndex]; }
+   public double[] getPathCosts() { return pathCosts; }
    @Override
    public String toString() { return "(Warp Distance=" + distance + ", Warp Path=" + path + ")"; }
 }
\ No newline at end of file
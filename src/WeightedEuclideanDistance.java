@@ -0,0 +1,31 @@
+// Euclidean distance where every dimension has its own weight, e.g. to let the torso count more than the neck
+// in a multi-dimensional (whole body) time series.
+public class WeightedEuclideanDistance implements DistanceFunction {
+   private final double[] weights;
+
+   // @param : one weight for every dimension
+   public WeightedEuclideanDistance(double[] weights) {
+      for (int x=0; x < weights.length; x++)
+         if (weights[x] < 0.0) throw new InternalError("ERROR:  the weights of a distance function can not be negative.");
+      this.weights = weights.clone();
+   }
+
+   public double calcDistance(double[] vector1, double[] vector2) {
+      if (vector1.length != vector2.length) throw new InternalError("ERROR:  cannot calculate the distance between vectors of different sizes.");
+      return calcDistance(vector1, 0, vector2, 0, vector1.length);
+   }
+   public double calcDistance(double[] values1, int offset1, double[] values2, int offset2, int length) {
+      if (length != weights.length) throw new InternalError("ERROR:  " + weights.length + " weights were given for " + length + " dimensions.");
+      double sqSum = 0.0;
+      for (int x=0; x < length; x++) {
+          final double diff = values1[offset1+x]-values2[offset2+x];
+          sqSum += weights[x]*diff*diff;
+      }
+      return Math.sqrt(sqSum);
+   }
+   public double calcDistance(double value1, double value2) {
+      if (weights.length != 1) throw new InternalError("ERROR:  " + weights.length + " weights were given for 1 dimension.");
+      final double diff = value1-value2;
+      return Math.sqrt(weights[0]*diff*diff);
+   }
+}
\ No newline at end of file
@@ -13,6 +13,9 @@ class WindowMatrix implements CostMatrix {
   public double get(int col, int row) { return windowCells.get(col, row); }
   public int size() { return windowCells.size(); }
 
+  // False if the cells live in a swap file, which can't be written from several threads at once.
+  public boolean isInMemory() { return windowCells instanceof MemMatrix; }
+
   public void freeMemory() {
     // Resources freed for SwapFileMatrix.
     if (windowCells instanceof SwapFileMatrix) {